@@ -0,0 +1,24 @@
+package study.querydsl.mapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * DTO에 붙이면 같은 패키지에 {DTO 이름}Mapper 클래스가 생성된다. (MapperProcessor)
+ * 생성된 매퍼는 Querydsl FactoryExpression이며, 리플렉션 없이 setter나 생성자를 직접 호출한다.
+ *
+ * Projections.bean(UserDto.class, member.username.as("name"), member.age)
+ *  -> UserDtoMapper.bean(member.username.as("name"), member.age)
+ * Projections.fields(...)      -> UserDtoMapper.fields(...)  (setter로 값을 넣는다.)
+ * Projections.constructor(...) -> UserDtoMapper.constructor(...)
+ *
+ * bean/fields : public 기본 생성자(또는 lombok @NoArgsConstructor)가 있어야 한다.
+ *               필드마다 set{필드명} setter가 있어야 한다. (직접 작성 또는 lombok @Data, @Setter)
+ * constructor : 직접 작성한 public 생성자 중 파라미터가 가장 많은 생성자를 사용한다.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface GenerateMapper {
+}
@@ -0,0 +1,354 @@
+package study.querydsl.mapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @GenerateMapper가 붙은 DTO마다 {DTO 이름}Mapper 소스를 생성한다.
+ *
+ * bean 매핑 : 인자의 별칭(또는 경로 이름)을 생성 시점에 프로퍼티 번호로 바꿔두고, row마다 switch로 setter를 호출한다.
+ * constructor 매핑 : 생성자를 직접 호출한다.
+ * null 값은 setter를 호출하지 않는 등 Projections.bean / Projections.constructor와 같게 동작한다.
+ */
+@SupportedAnnotationTypes("study.querydsl.mapper.GenerateMapper")
+public class MapperProcessor extends AbstractProcessor {
+
+    private static final String LOMBOK_NO_ARGS_CONSTRUCTOR = "lombok.NoArgsConstructor";
+    private static final String LOMBOK_DATA = "lombok.Data";
+    private static final String LOMBOK_SETTER = "lombok.Setter";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS
+                        || ((TypeElement) element).getNestingKind() != NestingKind.TOP_LEVEL) {
+                    error(element, "@GenerateMapper는 최상위 클래스에만 사용할 수 있습니다.");
+                    continue;
+                }
+                generate((TypeElement) element);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement dto) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(dto).getQualifiedName().toString();
+        String dtoName = dto.getSimpleName().toString();
+        String mapperName = dtoName + "Mapper";
+
+        List<VariableElement> properties = setterProperties(dto);
+        ExecutableElement constructor = widestConstructor(dto);
+        boolean bean = hasNoArgsConstructor(dto);
+        if (!bean && constructor == null) {
+            error(dto, "@GenerateMapper : 기본 생성자나 파라미터가 있는 public 생성자가 필요합니다.");
+            return;
+        }
+
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(packageName).append(";\n\n")
+                .append("import com.querydsl.core.types.Expression;\n")
+                .append("import com.querydsl.core.types.FactoryExpression;\n")
+                .append("import com.querydsl.core.types.FactoryExpressionBase;\n")
+                .append("import com.querydsl.core.types.Operation;\n")
+                .append("import com.querydsl.core.types.Ops;\n")
+                .append("import com.querydsl.core.types.Path;\n")
+                .append("import com.querydsl.core.types.Visitor;\n\n")
+                .append("import java.util.ArrayList;\n")
+                .append("import java.util.Arrays;\n")
+                .append("import java.util.Collections;\n")
+                .append("import java.util.List;\n\n")
+                .append("/**\n")
+                .append(" * ").append(dtoName).append(" 매퍼. ").append(MapperProcessor.class.getName())
+                .append("가 생성한 코드이므로 직접 수정하지 않는다.\n")
+                .append(" */\n")
+                .append("public final class ").append(mapperName)
+                .append(" extends FactoryExpressionBase<").append(dtoName).append("> {\n\n")
+                .append("    private static final long serialVersionUID = 1L;\n\n")
+                .append("    private final List<Expression<?>> args;\n")
+                .append("    // 인자별 프로퍼티 번호 (-1 : 없는 프로퍼티), null이면 생성자 매핑\n")
+                .append("    private final int[] properties;\n\n")
+                .append("    private ").append(mapperName).append("(List<Expression<?>> args, int[] properties) {\n")
+                .append("        super(").append(dtoName).append(".class);\n")
+                .append("        this.args = args;\n")
+                .append("        this.properties = properties;\n")
+                .append("    }\n\n");
+
+        if (bean) {
+            appendBeanFactories(src, mapperName, properties);
+        }
+        if (constructor != null) {
+            appendConstructorFactory(src, mapperName, constructor);
+        }
+        appendNewInstance(src, dtoName, bean ? properties : null, constructor);
+
+        src.append("    @Override\n")
+                .append("    public List<Expression<?>> getArgs() {\n")
+                .append("        return args;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public <R, C> R accept(Visitor<R, C> v, C context) {\n")
+                .append("        return v.visit(this, context);\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public boolean equals(Object obj) {\n")
+                .append("        if (obj == this) {\n")
+                .append("            return true;\n")
+                .append("        }\n")
+                .append("        if (!(obj instanceof ").append(mapperName).append(")) {\n")
+                .append("            return false;\n")
+                .append("        }\n")
+                .append("        ").append(mapperName).append(" other = (").append(mapperName).append(") obj;\n")
+                .append("        return args.equals(other.args) && Arrays.equals(properties, other.properties);\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public int hashCode() {\n")
+                .append("        return 31 * args.hashCode() + Arrays.hashCode(properties);\n")
+                .append("    }\n")
+                .append("}\n");
+
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(packageName + "." + mapperName, dto).openWriter()) {
+            writer.write(src.toString());
+        } catch (IOException e) {
+            error(dto, "@GenerateMapper : " + mapperName + " 생성 실패 " + e.getMessage());
+        }
+    }
+
+    private void appendBeanFactories(StringBuilder src, String mapperName, List<VariableElement> properties) {
+        src.append("    /**\n")
+                .append("     * Projections.bean 대체. 별칭(또는 경로 이름)과 같은 이름의 프로퍼티에 setter로 값을 넣는다.\n")
+                .append("     */\n")
+                .append("    public static ").append(mapperName).append(" bean(Expression<?>... args) {\n")
+                .append("        List<Expression<?>> bindings = new ArrayList<>(args.length);\n")
+                .append("        int[] properties = new int[args.length];\n")
+                .append("        for (int i = 0; i < args.length; i++) {\n")
+                .append("            Expression<?> expr = args[i];\n")
+                .append("            String name;\n")
+                .append("            if (expr instanceof Path<?>) {\n")
+                .append("                name = ((Path<?>) expr).getMetadata().getName();\n")
+                .append("            } else if (expr instanceof Operation<?> && ((Operation<?>) expr).getOperator() == Ops.ALIAS\n")
+                .append("                    && ((Operation<?>) expr).getArg(1) instanceof Path<?>) {\n")
+                .append("                Operation<?> alias = (Operation<?>) expr;\n")
+                .append("                name = ((Path<?>) alias.getArg(1)).getMetadata().getName();\n")
+                .append("                if (alias.getArg(0) instanceof FactoryExpression<?>) {\n")
+                .append("                    expr = alias.getArg(0);\n")
+                .append("                }\n")
+                .append("            } else {\n")
+                .append("                throw new IllegalArgumentException(\"Unsupported expression \" + expr);\n")
+                .append("            }\n")
+                .append("            bindings.add(expr);\n")
+                .append("            properties[i] = propertyIndex(name);\n")
+                .append("        }\n")
+                .append("        return new ").append(mapperName).append("(Collections.unmodifiableList(bindings), properties);\n")
+                .append("    }\n\n")
+                .append("    /**\n")
+                .append("     * Projections.fields 대체. 필드 대신 setter로 값을 넣는다.\n")
+                .append("     */\n")
+                .append("    public static ").append(mapperName).append(" fields(Expression<?>... args) {\n")
+                .append("        return bean(args);\n")
+                .append("    }\n\n")
+                .append("    private static int propertyIndex(String name) {\n")
+                .append("        switch (name) {\n");
+        for (int i = 0; i < properties.size(); i++) {
+            src.append("            case \"").append(properties.get(i).getSimpleName()).append("\":\n")
+                    .append("                return ").append(i).append(";\n");
+        }
+        src.append("            default:\n")
+                .append("                return -1;\n")
+                .append("        }\n")
+                .append("    }\n\n");
+    }
+
+    private void appendConstructorFactory(StringBuilder src, String mapperName, ExecutableElement constructor) {
+        List<? extends VariableElement> parameters = constructor.getParameters();
+        src.append("    /**\n")
+                .append("     * Projections.constructor 대체. 인자 순서대로 생성자에 넣는다.\n")
+                .append("     */\n")
+                .append("    public static ").append(mapperName).append(" constructor(Expression<?>... args) {\n")
+                .append("        if (args.length != ").append(parameters.size()).append(") {\n")
+                .append("            throw new IllegalArgumentException(\"Expected ").append(parameters.size())
+                .append(" arguments, but got \" + args.length);\n")
+                .append("        }\n");
+        for (int i = 0; i < parameters.size(); i++) {
+            src.append("        checkType(args[").append(i).append("], ")
+                    .append(boxedName(parameters.get(i).asType())).append(".class);\n");
+        }
+        src.append("        return new ").append(mapperName).append("(Collections.unmodifiableList(Arrays.asList(args)), null);\n")
+                .append("    }\n\n")
+                .append("    private static void checkType(Expression<?> arg, Class<?> parameterType) {\n")
+                .append("        if (!parameterType.isAssignableFrom(arg.getType())) {\n")
+                .append("            throw new IllegalArgumentException(\"Expected \" + parameterType.getName() + \", but got \" + arg);\n")
+                .append("        }\n")
+                .append("    }\n\n");
+    }
+
+    private void appendNewInstance(StringBuilder src, String dtoName, List<VariableElement> properties,
+                                   ExecutableElement constructor) {
+        src.append("    @Override\n")
+                .append("    public ").append(dtoName).append(" newInstance(Object... a) {\n");
+        if (constructor != null) {
+            src.append("        if (properties == null) {\n")
+                    .append("            return new ").append(dtoName).append("(");
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                TypeMirror type = parameters.get(i).asType();
+                src.append(i == 0 ? "" : ", ");
+                if (type.getKind().isPrimitive()) {
+                    // null(ex. 결과가 없는 서브쿼리)은 Projections.constructor처럼 기본값으로 넣는다.
+                    src.append("a[").append(i).append("] != null ? ");
+                }
+                src.append("(").append(boxedName(type)).append(") a[").append(i).append("]");
+                if (type.getKind().isPrimitive()) {
+                    src.append(" : ").append(defaultValue(type));
+                }
+            }
+            src.append(");\n")
+                    .append("        }\n");
+        }
+        if (properties == null) {
+            src.append("        throw new IllegalStateException();\n")
+                    .append("    }\n\n");
+            return;
+        }
+        src.append("        ").append(dtoName).append(" dto = new ").append(dtoName).append("();\n")
+                .append("        for (int i = 0; i < a.length; i++) {\n")
+                .append("            Object value = a[i];\n")
+                .append("            if (value == null) {\n")
+                .append("                continue;\n")
+                .append("            }\n")
+                .append("            switch (properties[i]) {\n");
+        for (int i = 0; i < properties.size(); i++) {
+            VariableElement property = properties.get(i);
+            src.append("                case ").append(i).append(":\n")
+                    .append("                    dto.").append(setterName(property)).append("((")
+                    .append(boxedName(property.asType())).append(") value);\n")
+                    .append("                    break;\n");
+        }
+        src.append("                default:\n")
+                .append("                    break;\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        return dto;\n")
+                .append("    }\n\n");
+    }
+
+    /**
+     * setter로 값을 넣을 수 있는 필드 목록.
+     * lombok이 만드는 setter는 이 프로세서에서 보이지 않을 수 있으므로 @Data, @Setter가 붙어있으면 있는 것으로 본다.
+     */
+    private List<VariableElement> setterProperties(TypeElement dto) {
+        boolean lombokSetters = hasAnnotation(dto, LOMBOK_DATA) || hasAnnotation(dto, LOMBOK_SETTER);
+        List<ExecutableElement> methods = ElementFilter.methodsIn(dto.getEnclosedElements());
+        List<VariableElement> properties = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(dto.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.FINAL)) {
+                continue;
+            }
+            if (lombokSetters || hasAnnotation(field, LOMBOK_SETTER) || hasSetter(methods, setterName(field))) {
+                properties.add(field);
+            }
+        }
+        return properties;
+    }
+
+    private boolean hasSetter(List<ExecutableElement> methods, String setterName) {
+        for (ExecutableElement method : methods) {
+            if (method.getSimpleName().contentEquals(setterName)
+                    && method.getParameters().size() == 1
+                    && method.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasNoArgsConstructor(TypeElement dto) {
+        if (hasAnnotation(dto, LOMBOK_NO_ARGS_CONSTRUCTOR)) {
+            return true;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(dto.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ExecutableElement widestConstructor(TypeElement dto) {
+        ExecutableElement widest = null;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(dto.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PUBLIC) && !constructor.getParameters().isEmpty()
+                    && (widest == null || constructor.getParameters().size() > widest.getParameters().size())) {
+                widest = constructor;
+            }
+        }
+        return widest;
+    }
+
+    private boolean hasAnnotation(Element element, String annotationName) {
+        return element.getAnnotationMirrors().stream()
+                .anyMatch(mirror -> ((TypeElement) mirror.getAnnotationType().asElement())
+                        .getQualifiedName().contentEquals(annotationName));
+    }
+
+    private String setterName(VariableElement field) {
+        String name = field.getSimpleName().toString();
+        return "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private String boxedName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String defaultValue(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case CHAR:
+                return "'\\0'";
+            case BYTE:
+                return "(byte) 0";
+            case SHORT:
+                return "(short) 0";
+            case LONG:
+                return "0L";
+            case FLOAT:
+                return "0F";
+            case DOUBLE:
+                return "0D";
+            default:
+                return "0";
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,173 @@
+package study.querydsl.jmh;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberDtoMapper;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 프로젝션 방식별 처리량, 할당량 비교 (QuerydslBasicTest의 프로젝션 예제들 + @GenerateMapper 매퍼)
+ * 메모리 H2에 회원을 rows명 저장해두고, 전체 회원을 각 방식으로 조회한다.
+ *
+ * ./gradlew jmh
+ * ops/s : 초당 전체 조회 횟수
+ * gc.alloc.rate.norm : 조회 1번당 할당 바이트 (rows로 나누면 row당 할당 바이트)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProjectionBenchmark {
+
+    private static final int TEAM_COUNT = 10;
+    private static final int INSERT_BATCH = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private EntityManagerFactory emf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.profiles.active=jmh",      // local 프로필의 InitMember 데이터는 넣지 않는다.
+                        "spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "querydsl.sql-log.enabled=false",
+                        "logging.level.root=warn",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "logging.level.org.hibernate.type=warn")
+                .run();
+        emf = context.getBean(EntityManagerFactory.class);
+        seed(context.getBean(JdbcTemplate.class));
+    }
+
+    /**
+     * JPA를 거치지 않고 JDBC 배치로 바로 넣는다. (측정 대상이 아닌 준비 시간 단축)
+     */
+    private void seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> teams = new ArrayList<>();
+        for (long id = 1; id <= TEAM_COUNT; id++) {
+            teams.add(new Object[]{id, "team" + id});
+        }
+        jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", teams);
+
+        List<Object[]> members = new ArrayList<>(INSERT_BATCH);
+        for (long id = 1; id <= rows; id++) {
+            members.add(new Object[]{id, "member" + id, (int) (id % 100), id % TEAM_COUNT + 1});
+            if (members.size() == INSERT_BATCH || id == rows) {
+                jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", members);
+                members.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Member> entity() {
+        return query(queryFactory -> queryFactory
+                .selectFrom(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<Tuple> tuple() {
+        return query(queryFactory -> queryFactory
+                .select(member.username, member.age)
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> bean() {
+        return query(queryFactory -> queryFactory
+                .select(Projections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> fields() {
+        return query(queryFactory -> queryFactory
+                .select(Projections.fields(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> constructor() {
+        return query(queryFactory -> queryFactory
+                .select(Projections.constructor(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> queryProjection() {
+        return query(queryFactory -> queryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> generatedBean() {
+        return query(queryFactory -> queryFactory
+                .select(MemberDtoMapper.bean(member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<MemberDto> generatedConstructor() {
+        return query(queryFactory -> queryFactory
+                .select(MemberDtoMapper.constructor(member.username, member.age))
+                .from(member)
+                .fetch());
+    }
+
+    /**
+     * 조회마다 새 EntityManager를 사용해서 영속성 컨텍스트가 쌓이지 않게 한다.
+     */
+    private <T> List<T> query(Function<JPAQueryFactory, List<T>> query) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return query.apply(new JPAQueryFactory(em));
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -6,10 +6,13 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
 
 @Profile("local")
 @Component
@@ -24,10 +27,15 @@ public class InitMember {
     }
 
     @Component
+    @RequiredArgsConstructor
     static class InitMemberService{
+        private static final int CHUNK_SIZE = 1000;
+
         @PersistenceContext
         private EntityManager em;
 
+        private final MemberJpaRepository memberJpaRepository;
+
         // @PostConstruct 부분과 @Transactional을 분리해야 한다.(라이프사이클 관련 이슈)
         @Transactional
         public void init(){
@@ -36,10 +44,13 @@ public class InitMember {
             em.persist(teamA);
             em.persist(teamB);
 
+            List<Member> members = new ArrayList<>();
             for(int i=0; i<100; i++){
                 Team selectedTeam = (i % 2) == 0 ? teamA : teamB;
-                em.persist(new Member("member" + i, i, selectedTeam));
+                members.add(new Member("member" + i, i, selectedTeam));
             }
+            // 한 건씩 persist하지 않고 배치 insert로 저장
+            memberJpaRepository.saveAll(members, CHUNK_SIZE);
         }
     }
 
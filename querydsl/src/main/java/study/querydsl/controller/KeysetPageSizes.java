@@ -0,0 +1,29 @@
+package study.querydsl.controller;
+
+import org.springframework.boot.autoconfigure.data.web.SpringDataWebProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 키셋 페이징 API의 size 파라미터를 Pageable과 같은 기준으로 제한한다.
+ * (spring.data.web.pageable.default-page-size, max-page-size)
+ *     1보다 작으면 기본 크기
+ *     최대 크기보다 크면 최대 크기 (size + 1개를 조회하므로 int 범위를 넘지 않게도 해준다.)
+ */
+@Component
+public class KeysetPageSizes {
+
+    private final int defaultSize;
+    private final int maxSize;
+
+    public KeysetPageSizes(SpringDataWebProperties properties) {
+        this.defaultSize = properties.getPageable().getDefaultPageSize();
+        this.maxSize = properties.getPageable().getMaxPageSize();
+    }
+
+    public int bound(int size) {
+        if (size < 1) {
+            return defaultSize;
+        }
+        return Math.min(size, maxSize);
+    }
+}
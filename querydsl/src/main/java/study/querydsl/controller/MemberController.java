@@ -1,16 +1,27 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.KeysetSlice;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequiredArgsConstructor
@@ -18,6 +29,10 @@ public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    private final KeysetPageSizes keysetPageSizes;
+
+    private static final int STREAM_FETCH_SIZE = 500;
 
     /**
      * 순수 JPA : 동적 쿼리 성능 최적화 - Dto, where을 통한 조회 API 컨트롤러
@@ -29,14 +44,44 @@ public class MemberController {
         return memberJpaRepository.searchByWhere(condition);
     }
 
+    /**
+     * Spring data JPA : v1의 스트리밍 버전
+     * 결과를 List로 만들지 않고 DB에서 읽는 대로 바로 응답에 JSON 배열로 써 내려간다.
+     * 결과가 아무리 커도 힙 사용량이 일정하다.
+     * 스트림을 다 읽을 때까지 커넥션을 잡고 있어야 하므로 읽기 전용 트랜잭션 안에서 응답을 작성한다.
+     * @param condition
+     * @param response
+     */
+    @Transactional(readOnly = true)
+    @GetMapping(value = "/v1/members/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void searchMemberV1Stream(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        try (Stream<MemberTeamDto> result = memberRepository.streamByWhere(condition, STREAM_FETCH_SIZE);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            Iterator<MemberTeamDto> iterator = result.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+            }
+            generator.writeEndArray();
+        }
+    }
+
     /**
      * Spring data JPA : 동적 쿼리 성능 최적화 - Dto, where을 통한 조회 API 컨트롤러
      * fetchResults()를 이용한 페이징 구현.
+     * approximateCount=true 이면 조건 없는 조회의 total을 DB 통계로 추정한다. (응답의 estimated로 확인)
      * @param condition
      * @return
      */
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable){
+    public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable,
+                                              @RequestParam(defaultValue = "false") boolean approximateCount){
+        if (approximateCount) {
+            return memberRepository.searchByWherePageApproximate(condition, pageable);
+        }
         return memberRepository.searchByWherePageSimple(condition, pageable);
     }
 
@@ -44,11 +89,45 @@ public class MemberController {
      * Spring data JPA : 동적 쿼리 성능 최적화 - Dto, where을 통한 조회 API 컨트롤러
      * 두번의 쿼링을 통한 페이징 구현.
      * 첫장, 마지막장의 로직 확인을 통한 페이징 최적화 추가구현.
+     * approximateCount=true 이면 조건 없는 조회의 total을 DB 통계로 추정한다. (응답의 estimated로 확인)
      * @param condition
      * @return
      */
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable){
+    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                              @RequestParam(defaultValue = "false") boolean approximateCount){
+        if (approximateCount) {
+            return memberRepository.searchByWherePageApproximate(condition, pageable);
+        }
         return memberRepository.searchByWherePageComplex(condition, pageable);
     }
+
+    /**
+     * Spring data JPA : 키셋(seek) 페이징
+     * offset 대신 이전 응답의 nextCursor를 넘겨받아 다음 페이지를 조회한다.
+     * 몇번째 페이지든 조회 비용이 같다.
+     * size는 Pageable처럼 최대 크기(spring.data.web.pageable.max-page-size)로 제한된다. (KeysetPageSizes)
+     * @param condition
+     * @param cursor
+     * @param size
+     * @return
+     */
+    @GetMapping("/v4/members")
+    public KeysetSlice<MemberTeamDto> searchMemberV4(MemberSearchCondition condition,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "20") int size){
+        return memberRepository.searchByWhereKeyset(condition, cursor, keysetPageSizes.bound(size));
+    }
+
+    /**
+     * Spring data JPA : count 쿼리 없는 Slice 페이징
+     * 전체 개수 없이 다음 페이지가 있는지(hasNext)만 응답한다.
+     * @param condition
+     * @param pageable
+     * @return
+     */
+    @GetMapping("/v5/members")
+    public Slice<MemberTeamDto> searchMemberV5(MemberSearchCondition condition, Pageable pageable){
+        return memberRepository.searchByWhereSlice(condition, pageable);
+    }
 }
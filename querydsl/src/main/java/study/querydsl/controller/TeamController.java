@@ -0,0 +1,81 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.TeamMemberRepository;
+import study.querydsl.repository.support.KeysetSlice;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 팀 회원 조회 API
+ * Team.members 컬렉션을 로딩하지 않으므로 회원 수와 상관없이 요청당 메모리 사용량이 일정하다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private static final int STREAM_BATCH_SIZE = 500;
+
+    private final TeamMemberRepository teamMemberRepository;
+    private final ObjectMapper objectMapper;
+    private final KeysetPageSizes keysetPageSizes;
+
+    @GetMapping("/teams/{teamId}/members/count")
+    public Map<String, Long> countMembers(@PathVariable Long teamId){
+        return Collections.singletonMap("count", teamMemberRepository.countMembers(teamId));
+    }
+
+    /**
+     * count 쿼리 없는 Slice 페이징 (?page=0&size=20&sort=username)
+     */
+    @GetMapping("/teams/{teamId}/members")
+    public Slice<MemberTeamDto> members(@PathVariable Long teamId, Pageable pageable){
+        return teamMemberRepository.findMembers(teamId, pageable);
+    }
+
+    /**
+     * 이름순 키셋 페이징. 이전 응답의 nextCursor로 다음 페이지를 조회한다.
+     * size는 Pageable처럼 최대 크기(spring.data.web.pageable.max-page-size)로 제한된다.
+     */
+    @GetMapping("/teams/{teamId}/members/keyset")
+    public KeysetSlice<MemberTeamDto> membersKeyset(@PathVariable Long teamId,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(defaultValue = "20") int size){
+        return teamMemberRepository.findMembers(teamId, cursor, keysetPageSizes.bound(size));
+    }
+
+    /**
+     * 팀 회원 전체를 JSON 배열로 써 내려간다.
+     * 키셋 페이지 단위로 읽으므로 /v1/members/stream과 달리 응답을 쓰는 동안 커넥션을 잡고 있지 않는다.
+     */
+    @GetMapping(value = "/teams/{teamId}/members/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void allMembers(@PathVariable Long teamId, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        try (Stream<MemberTeamDto> result = teamMemberRepository.streamMembers(teamId, STREAM_BATCH_SIZE);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            Iterator<MemberTeamDto> iterator = result.iterator();
+            while (iterator.hasNext()) {
+                generator.writeObject(iterator.next());
+            }
+            generator.writeEndArray();
+        }
+    }
+}
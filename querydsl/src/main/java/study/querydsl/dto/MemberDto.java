@@ -4,8 +4,10 @@ import com.querydsl.core.annotations.QueryProjection;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import study.querydsl.mapper.GenerateMapper;
 
 @Data
+@GenerateMapper     // 리플렉션 없는 매퍼(MemberDtoMapper) 생성
 @NoArgsConstructor
 public class MemberDto {
     private String username;
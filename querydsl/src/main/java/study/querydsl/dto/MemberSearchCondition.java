@@ -1,6 +1,7 @@
 package study.querydsl.dto;
 
 import lombok.Data;
+import org.springframework.util.StringUtils;
 
 @Data
 public class MemberSearchCondition {
@@ -10,4 +11,17 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;     // 값이 null이 될 수도 있으니 Integer 사용.
     private Integer ageLoe;
+
+    /**
+     * 웹에서는 null과 ""가 모두 넘어오는데 검색에서는 둘 다 조건 없음으로 처리한다.
+     * 캐시 키 등에 사용할 수 있도록 ""를 null로 맞춘 복사본을 만든다.
+     */
+    public MemberSearchCondition normalized() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(StringUtils.hasText(username) ? username : null);
+        normalized.setTeamName(StringUtils.hasText(teamName) ? teamName : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
 }
@@ -2,8 +2,10 @@ package study.querydsl.dto;
 
 import com.querydsl.core.annotations.QueryProjection;
 import lombok.Data;
+import study.querydsl.mapper.GenerateMapper;
 
 @Data
+@GenerateMapper     // 리플렉션 없는 매퍼(MemberTeamDtoMapper) 생성
 public class MemberTeamDto {
 
     private Long memberId;
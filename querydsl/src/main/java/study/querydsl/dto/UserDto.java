@@ -2,8 +2,10 @@ package study.querydsl.dto;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import study.querydsl.mapper.GenerateMapper;
 
 @Data
+@GenerateMapper     // 리플렉션 없는 매퍼(UserDtoMapper) 생성
 @NoArgsConstructor
 public class UserDto {
     private String name;
@@ -1,15 +1,25 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import study.querydsl.entity.support.PooledSequenceGenerator;
+import study.querydsl.repository.support.QueryCacheInvalidationListener;
 
 import javax.persistence.*;
 
 @Entity
+@EntityListeners(QueryCacheInvalidationListener.class)     // 변경 시 조회 캐시 비우기
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
 public class Member {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "member_seq")
+    @GenericGenerator(name = "member_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "member_seq"))   // id를 블록 단위로 미리 확보
     @Column(name = "member_id")
     private Long id;
 
@@ -36,8 +46,21 @@ public class Member {
         }
     }
 
-    private void changeTeam(Team team){
+    /**
+     * 연관관계 편의 메서드. 연관관계 주인(Member.team)을 바꾸고 Team.members도 맞춰준다.
+     * 새 팀이 아직 로딩되지 않은 프록시(em.getReference 등)여도 추가한다. (팀 row는 로딩되고, 같은 영속성 컨텍스트에서
+     * 나중에 members를 로딩했을 때 이 회원이 빠지지 않는다.)
+     * members 컬렉션을 아직 로딩하지 않았으면 로딩하지 않고 추가만 예약한다.
+     * (회원 하나를 넣으려고 팀의 회원 전체를 읽어오지 않는다. Team.addMember 참고)
+     * 이전 팀이 로딩되지 않은 프록시이면 그 members도 로딩된 적이 없으므로 제거할 것이 없다.
+     */
+    public void changeTeam(Team team){
+        if (this.team != null && Hibernate.isInitialized(this.team)) {
+            this.team.removeMember(this);
+        }
         this.team = team;
-        team.getMembers().add(this);
+        if (team != null) {
+            team.addMember(this);
+        }
     }
 }
@@ -1,8 +1,18 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import study.querydsl.entity.support.PooledSequenceGenerator;
+import study.querydsl.repository.support.QueryCacheInvalidationListener;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
@@ -10,20 +20,49 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@EntityListeners(QueryCacheInvalidationListener.class)     // 변경 시 조회 캐시 비우기
+// 2차 캐시 (ehcache.xml의 team). 엔티티로 변경하면 커밋 시점에 캐시도 갱신되고, JPQL 벌크 연산은 영역 전체를 비운다.
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "team_seq")
+    @GenericGenerator(name = "team_seq", strategy = PooledSequenceGenerator.STRATEGY,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "team_seq"))   // id를 블록 단위로 미리 확보
     private Long id;
 
+    // 유일하지 않다. 이름 -> id 조회는 TeamNameCache를 거친다.
     private String name;
 
+    // 회원 수, 회원 목록 페이지는 컬렉션을 로딩하지 말고 TeamMemberRepository로 조회한다.
+    // 여러 팀의 members를 초기화할 때 팀마다 select 하지 않고 100개씩 in 쿼리로 읽는다. (컬렉션은 fetch join 대상이 아니다. AdaptiveFetchPlans 참고)
+    @BatchSize(size = 100)
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
     public Team(String name){
         this.name = name;
     }
+
+    /**
+     * Member.changeTeam에서만 호출한다.
+     * members를 아직 로딩하지 않았으면 PersistentBag이 컬렉션을 읽지 않고 추가 작업을 쌓아둔다. (mappedBy 쪽 bag)
+     * flush 전에 컬렉션을 로딩해도 쌓아둔 회원이 함께 들어있고, flush 이후에 로딩하면 DB에서 함께 읽어온다.
+     */
+    void addMember(Member member) {
+        members.add(member);
+    }
+
+    /**
+     * bag의 remove는 컬렉션을 로딩하므로 로딩된 경우에만 제거한다.
+     * 연관관계 주인은 Member.team이므로 DB에는 그대로 반영되고, 나중에 로딩하면 빠진 상태로 읽어온다.
+     */
+    void removeMember(Member member) {
+        if (Hibernate.isInitialized(members)) {
+            members.remove(member);
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package study.querydsl.entity.support;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * 엔티티별 시퀀스 + pooled-lo 방식 식별자 생성기.
+ *
+ * 시퀀스를 한번 호출할 때마다 블록 크기만큼의 id를 확보하고 (시퀀스 값 = 블록의 시작 값),
+ * 블록을 다 쓸 때까지는 DB에 가지 않고 메모리에서 id를 나눠준다.
+ * 블록 할당은 Hibernate의 PooledLoOptimizer가 동기화해서 처리하므로 여러 스레드가 동시에 insert해도 id가 겹치지 않는다.
+ *
+ * 블록 크기는 spring.jpa.properties.study.id.block-size로 설정한다. (기본 1000)
+ * 시퀀스를 create할 때의 increment 값과 같아야 하므로, 운영 DB에서 값을 바꿀 때는 시퀀스도 같이 변경해야 한다.
+ *
+ * 사용법
+ * @GenericGenerator(name = "member_seq", strategy = PooledSequenceGenerator.STRATEGY,
+ *         parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "member_seq"))
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String STRATEGY = "study.querydsl.entity.support.PooledSequenceGenerator";
+
+    public static final String BLOCK_SIZE_SETTING = "study.id.block-size";
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        int blockSize = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(BLOCK_SIZE_SETTING, StandardConverters.INTEGER, DEFAULT_BLOCK_SIZE);
+        if (blockSize < 1) {
+            throw new MappingException(BLOCK_SIZE_SETTING + " must be greater than zero : " + blockSize);
+        }
+
+        // 매핑에서 직접 지정한 값이 있으면 그 값을 우선한다.
+        params.putIfAbsent(INCREMENT_PARAM, String.valueOf(blockSize));
+        params.putIfAbsent(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -0,0 +1,52 @@
+package study.querydsl.monitoring;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 현재 stack에서 SQL을 실행하게 만든 애플리케이션 코드 위치를 찾는다.
+ * Hibernate, Spring 프록시, 엔티티 프록시, 모니터링 구현 클래스를 건너뛰고 첫번째 study.querydsl 프레임을 돌려준다.
+ * (같은 패키지의 테스트 코드는 건너뛰지 않는다.)
+ * Throwable을 만들어서 stack을 읽으므로 쿼리 실행 시간에 비하면 작지만 공짜는 아니다.
+ * StatementScope에서 처음 보는 SQL에 대해서만 사용한다. (쿼리 지표의 리포지토리 메서드는 RepositoryMethodAspect)
+ */
+final class CallSites {
+
+    private static final String APPLICATION_PACKAGE = "study.querydsl.";
+    // SQL 실행 중에 stack에 올라오는 모니터링 구현 클래스 (내부 클래스 포함)
+    private static final Set<String> MONITORING_CLASSES = new HashSet<>(Arrays.asList(
+            CallSites.class.getName(),
+            MeteredJPAQuery.class.getName(),
+            MeteredJPAQueryFactory.class.getName(),
+            QueryMetrics.class.getName(),
+            RepositoryMethodAspect.class.getName(),
+            SampledSqlLogger.class.getName(),
+            SlowQueryLog.class.getName(),
+            StatementMonitoringConfig.class.getName(),
+            StatementMonitoringFilter.class.getName(),
+            StatementRecorder.class.getName(),
+            StatementScope.class.getName()
+    ));
+
+    private CallSites() {
+    }
+
+    static String current() {
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (className.startsWith(APPLICATION_PACKAGE)
+                    && !isMonitoringClass(className)
+                    && !className.contains("$$")                // CGLIB 프록시
+                    && !className.contains("$HibernateProxy$")) {  // 엔티티 지연 로딩 프록시 (ex. Team$HibernateProxy$...getName)
+                return frame.toString();
+            }
+        }
+        return "unknown";
+    }
+
+    private static boolean isMonitoringClass(String className) {
+        int inner = className.indexOf('$');
+        return MONITORING_CLASSES.contains(inner < 0 ? className : className.substring(0, inner));
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.monitoring;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.support.AdaptiveFetchPlans;
+
+import java.util.List;
+
+/**
+ * /actuator/fetchplans
+ * selectFrom() 호출 위치별 연관관계 사용 비율과 fetch join 결정 (LAZY / FETCH_JOIN).
+ * DELETE 요청으로 학습한 내용을 초기화한다.
+ */
+@Component
+@Endpoint(id = "fetchplans")
+public class FetchPlanEndpoint {
+
+    private final AdaptiveFetchPlans adaptiveFetchPlans;
+
+    public FetchPlanEndpoint(AdaptiveFetchPlans adaptiveFetchPlans) {
+        this.adaptiveFetchPlans = adaptiveFetchPlans;
+    }
+
+    @ReadOperation
+    public List<AdaptiveFetchPlans.FetchPlanDecision> fetchPlans() {
+        return adaptiveFetchPlans.snapshot();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        adaptiveFetchPlans.reset();
+    }
+}
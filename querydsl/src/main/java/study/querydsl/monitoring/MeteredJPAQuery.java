@@ -0,0 +1,113 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryResults;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * 실행 시간과 row 수를 QueryMetrics에 기록하는 JPAQuery.
+ * select(), where() 등은 자기 자신을 돌려주므로 MeteredJPAQueryFactory에서 시작한 쿼리는 끝까지 기록 대상이다.
+ * iterate()(스트리밍)는 소비하는 쪽에서 시간이 결정되므로 기록하지 않는다.
+ */
+public class MeteredJPAQuery<T> extends JPAQuery<T> {
+
+    private final QueryMetrics queryMetrics;
+    private Consumer<? super List<T>> fetchListener;
+    private UnaryOperator<QueryMetadata> contentMetadata;
+
+    public MeteredJPAQuery(EntityManager em, JPQLTemplates templates, QueryMetadata metadata, QueryMetrics queryMetrics) {
+        super(em, templates, metadata);
+        this.queryMetrics = queryMetrics;
+    }
+
+    /**
+     * 같은 EntityManager, 같은 지표로 다른 메타데이터의 쿼리를 만든다. (CountQueries에서 count 쿼리를 만들 때 사용)
+     */
+    public MeteredJPAQuery<Void> withMetadata(QueryMetadata metadata) {
+        return new MeteredJPAQuery<>(entityManager, getTemplates(), metadata, queryMetrics);
+    }
+
+    /**
+     * fetch, fetchOne, fetchResults로 조회한 결과를 받는다. (AdaptiveFetchPlans에서 결과 엔티티를 샘플링할 때 사용)
+     * clone한 쿼리에는 복사되지 않는다.
+     */
+    public MeteredJPAQuery<T> onFetched(Consumer<? super List<T>> listener) {
+        this.fetchListener = listener;
+        return this;
+    }
+
+    /**
+     * 컨텐츠 쿼리(count 제외)를 JPQL로 만들기 직전에 메타데이터를 바꾼다. (AdaptiveFetchPlans에서 fetch join을 붙일 때 사용)
+     * 실행 시점의 메타데이터를 받으므로 호출한 쪽이 나중에 추가한 조인도 보인다.
+     * clone한 쿼리에는 복사되지 않는다.
+     */
+    public MeteredJPAQuery<T> beforeSerialize(UnaryOperator<QueryMetadata> contentMetadata) {
+        this.contentMetadata = contentMetadata;
+        return this;
+    }
+
+    @Override
+    protected JPQLSerializer serialize(boolean forCountRow) {
+        if (contentMetadata == null || forCountRow) {
+            return super.serialize(forCountRow);
+        }
+        JPQLSerializer serializer = createSerializer();
+        serializer.serialize(contentMetadata.apply(getMetadata()), false, null);
+        return serializer;
+    }
+
+    @Override
+    public List<T> fetch() {
+        List<T> rows = queryMetrics.record("fetch", getMetadata().getWhere(), super::fetch, List::size);
+        fetched(rows);
+        return rows;
+    }
+
+    @Override
+    public T fetchOne() {
+        T row = queryMetrics.record("fetchOne", getMetadata().getWhere(), super::fetchOne, result -> result == null ? 0 : 1);
+        if (row != null) {
+            fetched(Collections.singletonList(row));
+        }
+        return row;
+    }
+
+    @Override
+    public long fetchCount() {
+        return queryMetrics.record("fetchCount", getMetadata().getWhere(), super::fetchCount, count -> 1);
+    }
+
+    @Override
+    public QueryResults<T> fetchResults() {
+        QueryResults<T> results = queryMetrics.record("fetchResults", getMetadata().getWhere(), super::fetchResults,
+                result -> result.getResults().size());
+        fetched(results.getResults());
+        return results;
+    }
+
+    private void fetched(List<T> rows) {
+        if (fetchListener != null) {
+            fetchListener.accept(rows);
+        }
+    }
+
+    @Override
+    public MeteredJPAQuery<T> clone(EntityManager entityManager, JPQLTemplates templates) {
+        MeteredJPAQuery<T> query = new MeteredJPAQuery<>(entityManager, templates, getMetadata().clone(), queryMetrics);
+        query.clone(this);  // 힌트, flush 모드, 락 모드도 복사
+        return query;
+    }
+
+    @Override
+    public MeteredJPAQuery<T> clone(EntityManager entityManager) {
+        return clone(entityManager, getTemplates());
+    }
+}
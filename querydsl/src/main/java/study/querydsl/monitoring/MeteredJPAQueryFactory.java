@@ -0,0 +1,91 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 만들어진 쿼리, 벌크 update/delete의 실행 시간을 QueryMetrics에 기록하는 JPAQueryFactory.
+ * 리포지토리에서 new JPAQueryFactory(em) 대신 사용한다.
+ */
+public class MeteredJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager entityManager;
+    private final JPQLTemplates templates;
+    private final QueryMetrics queryMetrics;
+
+    public MeteredJPAQueryFactory(EntityManager entityManager, QueryMetrics queryMetrics) {
+        super(entityManager);
+        this.entityManager = entityManager;
+        this.templates = JPAProvider.getTemplates(entityManager);
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        return new MeteredJPAQuery<Void>(entityManager, templates, new DefaultQueryMetadata(), queryMetrics);
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        return new MeteredUpdateClause(entityManager, path, templates, queryMetrics);
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        return new MeteredDeleteClause(entityManager, path, templates, queryMetrics);
+    }
+
+    private static class MeteredUpdateClause extends JPAUpdateClause {
+
+        private final QueryMetrics queryMetrics;
+        private Predicate where;
+
+        MeteredUpdateClause(EntityManager em, EntityPath<?> entity, JPQLTemplates templates, QueryMetrics queryMetrics) {
+            super(em, entity, templates);
+            this.queryMetrics = queryMetrics;
+        }
+
+        @Override
+        public JPAUpdateClause where(Predicate... o) {
+            where = ExpressionUtils.allOf(where, ExpressionUtils.allOf(o));
+            return super.where(o);
+        }
+
+        @Override
+        public long execute() {
+            return queryMetrics.record("execute", where, super::execute, affected -> affected);
+        }
+    }
+
+    private static class MeteredDeleteClause extends JPADeleteClause {
+
+        private final QueryMetrics queryMetrics;
+        private Predicate where;
+
+        MeteredDeleteClause(EntityManager em, EntityPath<?> entity, JPQLTemplates templates, QueryMetrics queryMetrics) {
+            super(em, entity, templates);
+            this.queryMetrics = queryMetrics;
+        }
+
+        @Override
+        public JPADeleteClause where(Predicate... o) {
+            where = ExpressionUtils.allOf(where, ExpressionUtils.allOf(o));
+            return super.where(o);
+        }
+
+        @Override
+        public long execute() {
+            return queryMetrics.record("execute", where, super::execute, affected -> affected);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 조건(where)의 모양.
+ * 값은 파라미터(?1, ?2..)로 바뀌므로 검색어가 달라도 같은 조건 조합이면 같은 모양이 된다.
+ * ex) member1.username = ?1 and team.name = ?2
+ *
+ * 쿼리마다 JPQL로 직렬화하지 않도록 값을 뺀 조건 구조(경로, 연산자, 파라미터 이름)의 해시로 직렬화 결과를 캐시한다.
+ * 구조 해시는 식 트리를 한번 훑기만 하므로 문자열을 만들지 않는다.
+ * 서브쿼리, 값이 아닌 인자를 가진 템플릿처럼 구조만으로 모양을 정할 수 없는 조건은 매번 직렬화한다.
+ */
+public final class PredicateShapes {
+
+    public static final String NONE = "-";
+
+    // 조건 모양은 코드에 적힌 조합 수만큼만 생긴다. 넘치면 더 캐시하지 않고 직렬화한다.
+    private static final int MAX_CACHED_SHAPES = 1000;
+    private static final ConcurrentMap<Long, String> SHAPES = new ConcurrentHashMap<>();
+
+    private PredicateShapes() {
+    }
+
+    public static String of(Predicate where) {
+        if (where == null) {
+            return NONE;
+        }
+        Long structure = where.accept(StructureHash.INSTANCE, null);
+        if (structure == null) {
+            return serialize(where);
+        }
+        String shape = SHAPES.get(structure);
+        if (shape == null) {
+            shape = serialize(where);
+            if (SHAPES.size() < MAX_CACHED_SHAPES) {
+                SHAPES.putIfAbsent(structure, shape);
+            }
+        }
+        return shape;
+    }
+
+    private static String serialize(Predicate where) {
+        JPQLSerializer serializer = new JPQLSerializer(JPQLTemplates.DEFAULT);
+        serializer.handle(where);
+        return serializer.toString();
+    }
+
+    /**
+     * 값을 제외한 식 구조의 해시. 구조로 모양을 정할 수 없으면 null
+     */
+    private static final class StructureHash implements Visitor<Long, Void> {
+
+        private static final StructureHash INSTANCE = new StructureHash();
+
+        @Override
+        public Long visit(Constant<?> expr, Void context) {
+            // 값은 ?로 바뀐다. 빈 컬렉션(in ())은 직렬화 결과가 달라지므로 구분한다.
+            Object value = expr.getConstant();
+            return value instanceof Collection && ((Collection<?>) value).isEmpty() ? 2L : 1L;
+        }
+
+        @Override
+        public Long visit(FactoryExpression<?> expr, Void context) {
+            return combine(expr.getType().hashCode(), expr.getArgs());
+        }
+
+        @Override
+        public Long visit(Operation<?> expr, Void context) {
+            return combine(expr.getOperator().hashCode(), expr.getArgs());
+        }
+
+        @Override
+        public Long visit(ParamExpression<?> expr, Void context) {
+            return 31L * expr.getName().hashCode() + 3;
+        }
+
+        @Override
+        public Long visit(Path<?> expr, Void context) {
+            // PathMetadata.hashCode는 부모 경로를 포함하지 않으므로(member.id, team.id) 루트까지 따라간다.
+            long hash = 5;
+            for (Path<?> path = expr; path != null; path = path.getMetadata().getParent()) {
+                PathMetadata metadata = path.getMetadata();
+                hash = 31 * (31 * hash + metadata.getElement().hashCode()) + metadata.getPathType().hashCode();
+            }
+            return hash;
+        }
+
+        @Override
+        public Long visit(SubQueryExpression<?> expr, Void context) {
+            return null;
+        }
+
+        @Override
+        public Long visit(TemplateExpression<?> expr, Void context) {
+            long hash = expr.getTemplate().hashCode();
+            for (Object arg : expr.getArgs()) {
+                if (!(arg instanceof Expression)) {
+                    return null;
+                }
+                Long child = ((Expression<?>) arg).accept(this, null);
+                if (child == null) {
+                    return null;
+                }
+                hash = 31 * hash + child;
+            }
+            return hash;
+        }
+
+        private Long combine(long hash, List<Expression<?>> args) {
+            for (Expression<?> arg : args) {
+                Long child = arg.accept(this, null);
+                if (child == null) {
+                    return null;
+                }
+                hash = 31 * hash + child;
+            }
+            return hash;
+        }
+    }
+}
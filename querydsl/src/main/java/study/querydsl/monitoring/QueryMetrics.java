@@ -0,0 +1,187 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.core.types.Predicate;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 리포지토리 메서드별 Querydsl 쿼리 지연 시간, 조회 row 수 기록.
+ * MeteredJPAQueryFactory로 만든 쿼리의 fetch, fetchOne, fetchCount, fetchResults, execute가 기록된다.
+ *
+ * 지표 (태그 : method = 쿼리를 실행한 리포지토리 메서드, operation, shape = 조건 모양)
+ *   method는 RepositoryMethodAspect가 메서드 호출당 한번 기록하고, shape는 조건 구조별로 한번만 직렬화한다. (PredicateShapes)
+ *   querydsl.query      : 지연 시간 (p50, p99, p999 - Micrometer 내부 HdrHistogram)
+ *   querydsl.query.rows : 조회/변경 row 수
+ * /actuator/metrics/querydsl.query 또는 /actuator/querymetrics (QueryMetricsEndpoint)로 확인한다.
+ * 느린 쿼리는 SQL, 실행 계획과 함께 SlowQueryLog에 남는다.
+ */
+@Component
+public class QueryMetrics {
+
+    private static final String TIMER = "querydsl.query";
+    private static final String ROWS = "querydsl.query.rows";
+
+    private static final String UNKNOWN_METHOD = "unknown";
+
+    // 현재 스레드에서 실행 중인 리포지토리 메서드 (RepositoryMethodAspect, 다른 스레드에서는 callAs로 넘겨준다.)
+    private static final ThreadLocal<String> METHOD = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final SlowQueryLog slowQueryLog;
+    private final ConcurrentMap<QueryKey, QueryMeters> meters = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry meterRegistry, SlowQueryLog slowQueryLog) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    public <T> T record(String operation, Predicate where, Supplier<T> query, ToLongFunction<T> rows) {
+        QueryKey key = new QueryKey(currentMethod(), operation, PredicateShapes.of(where));
+        QueryMeters queryMeters = meters.computeIfAbsent(key, this::register);
+        SlowQueryLog.Capture capture = slowQueryLog.begin();
+        long start = System.nanoTime();
+        try {
+            T result = query.get();
+            queryMeters.rows.record(rows.applyAsLong(result));
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            queryMeters.timer.record(elapsed, TimeUnit.NANOSECONDS);
+            slowQueryLog.end(capture, key.method, key.operation, key.shape, elapsed);
+        }
+    }
+
+    /**
+     * 현재 쿼리를 실행하고 있는 리포지토리 메서드. ex) MemberRepositoryImpl.searchByWhere
+     * 리포지토리 메서드에 들어올 때 RepositoryMethodAspect가 기록한 값이다. 리포지토리 밖에서 실행한 쿼리는 unknown
+     */
+    public String currentMethod() {
+        String method = METHOD.get();
+        return method != null ? method : UNKNOWN_METHOD;
+    }
+
+    /**
+     * 리포지토리 메서드 시작. 바깥 리포지토리 메서드가 이미 기록되어 있으면 그대로 두고 false를 돌려준다.
+     * true를 돌려받은 경우만 exit()를 호출한다. (RepositoryMethodAspect)
+     */
+    static boolean enter(String method) {
+        if (METHOD.get() != null) {
+            return false;
+        }
+        METHOD.set(method);
+        return true;
+    }
+
+    static void exit() {
+        METHOD.remove();
+    }
+
+    /**
+     * 다른 스레드에서 쿼리를 실행할 때, 원래 호출한 리포지토리 메서드로 기록되게 한다.
+     */
+    public <T> T callAs(String method, Supplier<T> query) {
+        String previous = METHOD.get();
+        METHOD.set(method);
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                METHOD.remove();
+            } else {
+                METHOD.set(previous);
+            }
+        }
+    }
+
+    public List<QueryStats> snapshot() {
+        List<QueryStats> stats = new ArrayList<>();
+        meters.forEach((key, queryMeters) -> stats.add(new QueryStats(key, queryMeters)));
+        stats.sort(Comparator.comparingDouble(QueryStats::getTotalMs).reversed());
+        return stats;
+    }
+
+    private QueryMeters register(QueryKey key) {
+        Timer timer = Timer.builder(TIMER)
+                .tags("method", key.method, "operation", key.operation, "shape", key.shape)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+        DistributionSummary rows = DistributionSummary.builder(ROWS)
+                .tags("method", key.method, "operation", key.operation, "shape", key.shape)
+                .register(meterRegistry);
+        return new QueryMeters(timer, rows);
+    }
+
+    @EqualsAndHashCode
+    private static class QueryKey {
+        private final String method;
+        private final String operation;
+        private final String shape;
+
+        QueryKey(String method, String operation, String shape) {
+            this.method = method;
+            this.operation = operation;
+            this.shape = shape;
+        }
+    }
+
+    private static class QueryMeters {
+        private final Timer timer;
+        private final DistributionSummary rows;
+
+        QueryMeters(Timer timer, DistributionSummary rows) {
+            this.timer = timer;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * 엔드포인트 응답용 통계 (시간 단위 ms)
+     */
+    @Getter
+    public static class QueryStats {
+        private final String method;
+        private final String operation;
+        private final String shape;
+        private final long count;
+        private final double totalMs;
+        private final double meanMs;
+        private final double maxMs;
+        private final double p50Ms;
+        private final double p99Ms;
+        private final double p999Ms;
+        private final double meanRows;
+
+        QueryStats(QueryKey key, QueryMeters meters) {
+            this.method = key.method;
+            this.operation = key.operation;
+            this.shape = key.shape;
+            this.count = meters.timer.count();
+            this.totalMs = meters.timer.totalTime(TimeUnit.MILLISECONDS);
+            this.meanMs = meters.timer.mean(TimeUnit.MILLISECONDS);
+            this.maxMs = meters.timer.max(TimeUnit.MILLISECONDS);
+            double[] percentiles = new double[3];
+            for (ValueAtPercentile value : meters.timer.takeSnapshot().percentileValues()) {
+                int index = value.percentile() == 0.5 ? 0 : value.percentile() == 0.99 ? 1 : 2;
+                percentiles[index] = value.value(TimeUnit.MILLISECONDS);
+            }
+            this.p50Ms = percentiles[0];
+            this.p99Ms = percentiles[1];
+            this.p999Ms = percentiles[2];
+            this.meanRows = meters.rows.mean();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package study.querydsl.monitoring;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * /actuator/querymetrics
+ * 리포지토리 메서드 + 연산 + 조건 모양별 쿼리 지연 시간(p50, p99, p999)과 평균 row 수. 총 소요 시간이 큰 순서.
+ */
+@Component
+@Endpoint(id = "querymetrics")
+public class QueryMetricsEndpoint {
+
+    private final QueryMetrics queryMetrics;
+
+    public QueryMetricsEndpoint(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    @ReadOperation
+    public List<QueryMetrics.QueryStats> queries() {
+        return queryMetrics.snapshot();
+    }
+}
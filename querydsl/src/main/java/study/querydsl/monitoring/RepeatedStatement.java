@@ -0,0 +1,25 @@
+package study.querydsl.monitoring;
+
+import lombok.Getter;
+
+/**
+ * 한 범위 안에서 반복 실행된 SQL과 처음 실행한 애플리케이션 코드 위치.
+ */
+@Getter
+public class RepeatedStatement {
+
+    private final String sql;
+    private final int count;
+    private final String callSite;
+
+    RepeatedStatement(String sql, int count, String callSite) {
+        this.sql = sql;
+        this.count = count;
+        this.callSite = callSite;
+    }
+
+    @Override
+    public String toString() {
+        return count + "x at " + callSite + " : " + sql;
+    }
+}
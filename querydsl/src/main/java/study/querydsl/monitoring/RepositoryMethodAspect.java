@@ -0,0 +1,37 @@
+package study.querydsl.monitoring;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 리포지토리 메서드에 들어올 때 메서드 이름을 기록해둔다. (QueryMetrics.currentMethod, AdaptiveFetchPlans의 호출 위치)
+ * 쿼리마다 stack trace를 만들어 호출한 메서드를 찾는 대신 메서드 호출당 한번 ThreadLocal에 넣는다.
+ *
+ * study.querydsl.repository 패키지 빈의 public 메서드가 대상이다. (support 패키지는 제외)
+ * 가장 바깥 리포지토리 메서드로 기록한다. (ex. MemberJpaRepository.searchByWhere 안에서 호출한 TeamNameCache.findIds의 쿼리도
+ * MemberJpaRepository.searchByWhere로 기록)
+ * 스프링 데이터 리포지토리 프록시(MemberRepository)는 건너뛰고 실제 구현(MemberRepositoryImpl)의 이름을 사용한다.
+ */
+@Aspect
+@Component
+public class RepositoryMethodAspect {
+
+    private static final String REPOSITORY_PACKAGE = "study.querydsl.repository";
+
+    @Around("execution(public * study.querydsl.repository.*.*(..))")
+    public Object recordMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+        Class<?> target = ClassUtils.getUserClass(joinPoint.getTarget());
+        if (!REPOSITORY_PACKAGE.equals(ClassUtils.getPackageName(target))
+                || !QueryMetrics.enter(target.getSimpleName() + "." + joinPoint.getSignature().getName())) {
+            return joinPoint.proceed();
+        }
+        try {
+            return joinPoint.proceed();
+        } finally {
+            QueryMetrics.exit();
+        }
+    }
+}
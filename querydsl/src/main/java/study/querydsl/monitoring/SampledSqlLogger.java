@@ -0,0 +1,180 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 샘플링 + 비동기 SQL 로거 (p6spy 대체)
+ *
+ * 실행이 끝난 SQL 중 slowThreshold 이상 걸린 SQL과 실패한 SQL은 모두, 나머지는 sampleRate 비율만큼만 남긴다.
+ * 쿼리를 실행한 스레드는 링 버퍼(고정 크기 큐)에 넣기만 하고, 문자열 조립과 로그 출력은 별도 스레드에서 한다.
+ * 버퍼가 가득 차면 기다리지 않고 버린다. (버린 수는 sql.log.dropped 지표와 로그로 남긴다.)
+ * 종료할 때는 버퍼에 남은 로그를 모두 출력한 뒤 writer 스레드를 끝낸다.
+ *
+ * 로그 : study.querydsl.sql (INFO : 샘플, WARN : 느린 SQL, 실패한 SQL)
+ */
+@Slf4j(topic = "study.querydsl.sql")
+public class SampledSqlLogger implements QueryExecutionListener, DisposableBean {
+
+    // 종료할 때 남은 로그를 출력하도록 기다리는 시간
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000;
+
+    private final double sampleRate;
+    private final long slowThresholdMillis;
+    private final BlockingQueue<SqlLogEntry> buffer;
+    private final Counter dropped;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public SampledSqlLogger(double sampleRate, long slowThresholdMillis, int bufferSize, MeterRegistry meterRegistry) {
+        Assert.isTrue(sampleRate >= 0 && sampleRate <= 1, "Sample rate must be between 0 and 1!");
+        Assert.isTrue(bufferSize > 0, "Buffer size must be greater than zero!");
+        this.sampleRate = sampleRate;
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.dropped = Counter.builder("sql.log.dropped")
+                .description("SQL log entries dropped because the buffer was full")
+                .register(meterRegistry);
+        this.writer = new Thread(this::drain, "sql-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        boolean slow = execInfo.getElapsedTime() >= slowThresholdMillis;
+        boolean failed = !execInfo.isSuccess();
+        if (!slow && !failed && !sampled()) {
+            return;
+        }
+        // 파라미터 값은 참조만 복사하고, 문자열로 바꾸는 건 writer 스레드에서 한다.
+        List<String> queries = new ArrayList<>(queryInfoList.size());
+        List<List<List<ParameterSetOperation>>> parameters = new ArrayList<>(queryInfoList.size());
+        for (QueryInfo queryInfo : queryInfoList) {
+            queries.add(queryInfo.getQuery());
+            parameters.add(queryInfo.getParametersList());
+        }
+        SqlLogEntry entry = new SqlLogEntry(execInfo.getElapsedTime(), slow, failed, execInfo.getBatchSize(),
+                Thread.currentThread().getName(), queries, parameters);
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private boolean sampled() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    private void drain() {
+        long reportedDrops = 0;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                SqlLogEntry entry = buffer.poll(1, TimeUnit.SECONDS);
+                if (entry != null) {
+                    write(entry);
+                }
+                reportedDrops = reportDrops(reportedDrops);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 종료 : 버퍼에 남은 로그를 출력한다. (그 뒤에 들어오는 로그는 기다리지 않는다.)
+        List<SqlLogEntry> remaining = new ArrayList<>(buffer.size());
+        buffer.drainTo(remaining);
+        remaining.forEach(this::write);
+        reportDrops(reportedDrops);
+    }
+
+    private long reportDrops(long reportedDrops) {
+        long drops = (long) dropped.count();
+        if (drops > reportedDrops) {
+            log.warn("{} SQL log entries dropped (buffer full)", drops - reportedDrops);
+        }
+        return drops;
+    }
+
+    private void write(SqlLogEntry entry) {
+        try {
+            doWrite(entry);
+        } catch (RuntimeException e) {
+            // 파라미터 toString 실패 등으로 writer 스레드가 죽지 않게 한다.
+            log.warn("failed to write SQL log", e);
+        }
+    }
+
+    private void doWrite(SqlLogEntry entry) {
+        String message = String.format("[%dms][%s]%s %s %s", entry.elapsedMillis, entry.threadName,
+                entry.batchSize > 0 ? "[batch " + entry.batchSize + "]" : "",
+                String.join("; ", entry.queries),
+                entry.parameters.stream().map(SampledSqlLogger::formatParameters).collect(Collectors.joining(", ")));
+        if (entry.failed) {
+            log.warn("failed {}", message);
+        } else if (entry.slow) {
+            log.warn("slow {}", message);
+        } else {
+            log.info(message);
+        }
+    }
+
+    // setString(1, "member1"), setInt(2, 10) -> ["member1", 10] (배치는 실행 단위마다 하나씩)
+    private static String formatParameters(List<List<ParameterSetOperation>> parametersList) {
+        return parametersList.stream()
+                .map(operations -> operations.stream()
+                        .map(operation -> operation.getArgs().length > 1 ? String.valueOf(operation.getArgs()[1]) : "")
+                        .collect(Collectors.joining(", ", "[", "]")))
+                .collect(Collectors.joining(""));
+    }
+
+    /**
+     * 새 로그를 받지 않고, writer 스레드가 버퍼를 비울 때까지 기다린다.
+     * 제한 시간 안에 끝나지 않으면 writer 스레드를 중단한다. (남은 로그는 버려진다.)
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        writer.join(SHUTDOWN_TIMEOUT_MILLIS);
+        if (writer.isAlive()) {
+            writer.interrupt();
+        }
+    }
+
+    private static class SqlLogEntry {
+        private final long elapsedMillis;
+        private final boolean slow;
+        private final boolean failed;
+        private final int batchSize;
+        private final String threadName;
+        private final List<String> queries;
+        private final List<List<List<ParameterSetOperation>>> parameters;
+
+        SqlLogEntry(long elapsedMillis, boolean slow, boolean failed, int batchSize, String threadName,
+                    List<String> queries, List<List<List<ParameterSetOperation>>> parameters) {
+            this.elapsedMillis = elapsedMillis;
+            this.slow = slow;
+            this.failed = failed;
+            this.batchSize = batchSize;
+            this.threadName = threadName;
+            this.queries = queries;
+            this.parameters = parameters;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.monitoring;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/slowqueries
+ * 조건 모양별 느린 쿼리 (SQL, 바인딩된 파라미터, 실행 계획). 최근에 느렸던 모양부터.
+ * DELETE 요청으로 비운다.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueryEndpoint {
+
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueryEndpoint(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @ReadOperation
+    public Map<String, List<SlowQueryLog.SlowQuery>> slowQueries() {
+        return slowQueryLog.snapshot();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        slowQueryLog.clear();
+    }
+}
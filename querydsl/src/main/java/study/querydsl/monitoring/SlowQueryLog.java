@@ -0,0 +1,272 @@
+package study.querydsl.monitoring;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 느린 쿼리 수집기.
+ *
+ * QueryMetrics가 기록하는 쿼리(MeteredJPAQuery)가 threshold 이상 걸리면
+ * 그 동안 같은 스레드에서 실행된 SQL, 바인딩된 파라미터, 실행 계획(EXPLAIN ANALYZE)을 남긴다.
+ * SQL과 파라미터는 datasource-proxy 리스너로 받는다. (SqlLogConfig에서 DataSource를 감쌀 때 같이 등록된다.)
+ *
+ * 실행 계획은 별도 스레드에서 같은 SQL, 같은 파라미터로 EXPLAIN ANALYZE를 실행해서 얻는다. (H2, PostgreSQL, MySQL 8)
+ *   EXPLAIN ANALYZE는 쿼리를 실제로 실행하므로 select만 대상으로 하고, 설정(explain)으로 켠 경우에만 실행한다. (local 프로필만)
+ *   계획을 얻는 큐가 가득 차면 계획 없이 SQL만 남긴다.
+ *
+ * 저장소는 메모리에 두고 크기를 제한한다.
+ *   조건 모양(PredicateShapes)별로 최근 perShape개, 모양은 최근에 느렸던 순서로 maxShapes개까지.
+ * /actuator/slowqueries (SlowQueryEndpoint)로 확인한다.
+ * 바인딩된 파라미터는 개인정보일 수 있으므로 설정(show-bindings)으로 켜지 않으면 값을 가리고 내보낸다. (local 프로필만)
+ */
+@Slf4j
+@Component
+public class SlowQueryLog implements QueryExecutionListener, DisposableBean {
+
+    // 쿼리 하나에서 남길 SQL 수 (fetch join 없이 지연 로딩이 섞이면 SQL이 많아질 수 있다)
+    private static final int MAX_STATEMENTS = 10;
+
+    private static final ThreadLocal<Capture> CURRENT = new ThreadLocal<>();
+
+    private final ObjectProvider<DataSource> dataSource;
+    private final long thresholdNanos;
+    private final int maxShapes;
+    private final int perShape;
+    private final boolean explain;
+    private final boolean showBindings;
+    private final ThreadPoolExecutor explainExecutor;
+
+    // 최근에 느렸던 모양이 뒤로 가도록 access order
+    private final LinkedHashMap<String, Deque<SlowQuery>> store = new LinkedHashMap<>(16, 0.75f, true);
+
+    public SlowQueryLog(ObjectProvider<DataSource> dataSource,
+                        @Value("${querydsl.slow-query.threshold-millis:500}") long thresholdMillis,
+                        @Value("${querydsl.slow-query.max-shapes:100}") int maxShapes,
+                        @Value("${querydsl.slow-query.per-shape:5}") int perShape,
+                        @Value("${querydsl.slow-query.explain:false}") boolean explain,
+                        @Value("${querydsl.slow-query.show-bindings:false}") boolean showBindings) {
+        Assert.isTrue(maxShapes > 0 && perShape > 0, "Slow query store size must be greater than zero!");
+        this.dataSource = dataSource;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.maxShapes = maxShapes;
+        this.perShape = perShape;
+        this.explain = explain;
+        this.showBindings = showBindings;
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100), runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * 현재 스레드에서 실행되는 SQL을 모으기 시작한다. 반드시 end()와 짝을 맞춰 호출해야 한다.
+     * 안쪽에서 다시 begin()하면(fetchResults 안의 fetchCount 등) 안쪽 쿼리가 끝날 때까지 SQL은 안쪽에 모인다.
+     */
+    public Capture begin() {
+        Capture capture = new Capture(CURRENT.get());
+        CURRENT.set(capture);
+        return capture;
+    }
+
+    public void end(Capture capture, String method, String operation, String shape, long elapsedNanos) {
+        if (capture.parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(capture.parent);
+        }
+        if (elapsedNanos < thresholdNanos || capture.statements.isEmpty()) {
+            return;
+        }
+        SlowQuery slowQuery = new SlowQuery(method, operation, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                capture.statements);
+        add(shape, slowQuery);
+        if (explain) {
+            explainExecutor.execute(() -> slowQuery.plan = explain(slowQuery.slowestStatement()));
+        }
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Capture capture = CURRENT.get();
+        if (capture == null || capture.statements.size() >= MAX_STATEMENTS) {
+            return;
+        }
+        for (QueryInfo queryInfo : queryInfoList) {
+            List<List<ParameterSetOperation>> parametersList = queryInfo.getParametersList();
+            // 배치는 첫 번째 파라미터 묶음만 남긴다.
+            List<ParameterSetOperation> parameters = parametersList.isEmpty()
+                    ? new ArrayList<>() : new ArrayList<>(parametersList.get(0));
+            capture.statements.add(new Statement(queryInfo.getQuery(), parameters, execInfo.getElapsedTime(), showBindings));
+        }
+    }
+
+    public synchronized Map<String, List<SlowQuery>> snapshot() {
+        Map<String, List<SlowQuery>> snapshot = new LinkedHashMap<>();
+        // 최근에 느렸던 모양부터. store.get()은 access order를 바꾸므로 (조회한 모양이 최근 것이 된다) 순회만 한다.
+        List<Map.Entry<String, Deque<SlowQuery>>> shapes = new ArrayList<>(store.entrySet());
+        for (int i = shapes.size() - 1; i >= 0; i--) {
+            snapshot.put(shapes.get(i).getKey(), new ArrayList<>(shapes.get(i).getValue()));
+        }
+        return snapshot;
+    }
+
+    public synchronized void clear() {
+        store.clear();
+    }
+
+    private synchronized void add(String shape, SlowQuery slowQuery) {
+        Deque<SlowQuery> queries = store.computeIfAbsent(shape, key -> new ArrayDeque<>());
+        queries.addFirst(slowQuery);
+        if (queries.size() > perShape) {
+            queries.removeLast();
+        }
+        if (store.size() > maxShapes) {
+            store.remove(store.keySet().iterator().next());
+        }
+    }
+
+    private String explain(Statement statement) {
+        if (!isSelect(statement.sql)) {
+            return null;
+        }
+        try (Connection connection = dataSource.getObject().getConnection();
+             PreparedStatement ps = connection.prepareStatement("EXPLAIN ANALYZE " + statement.sql)) {
+            for (ParameterSetOperation parameter : statement.parameters) {
+                // 원래 쿼리에 했던 setXxx(index, value) 호출을 그대로 다시 한다.
+                parameter.getMethod().invoke(ps, parameter.getArgs());
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                List<String> lines = new ArrayList<>();
+                while (rs.next()) {
+                    lines.add(rs.getString(1));
+                }
+                return String.join("\n", lines);
+            }
+        } catch (SQLException | ReflectiveOperationException | RuntimeException e) {
+            log.warn("failed to explain slow query: {}", statement.sql, e);
+            return "EXPLAIN failed : " + e;
+        }
+    }
+
+    private static boolean isSelect(String sql) {
+        String trimmed = sql.trim();
+        while (trimmed.startsWith("/*") && trimmed.contains("*/")) {
+            trimmed = trimmed.substring(trimmed.indexOf("*/") + 2).trim();
+        }
+        return trimmed.regionMatches(true, 0, "select", 0, "select".length());
+    }
+
+    @Override
+    public void destroy() {
+        explainExecutor.shutdownNow();
+    }
+
+    /**
+     * 쿼리 하나를 실행하는 동안 모은 SQL
+     */
+    public static class Capture {
+        private final Capture parent;
+        private final List<Statement> statements = new ArrayList<>();
+
+        private Capture(Capture parent) {
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * 엔드포인트 응답에는 sql, elapsedMs, bindings만 내보낸다.
+     */
+    public static class Statement {
+        static final String MASKED = "****";
+
+        private final String sql;
+        private final List<ParameterSetOperation> parameters;
+        private final long elapsedMs;
+        private final boolean showBindings;
+
+        Statement(String sql, List<ParameterSetOperation> parameters, long elapsedMs, boolean showBindings) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.elapsedMs = elapsedMs;
+            this.showBindings = showBindings;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        /**
+         * setString(1, "member1"), setInt(2, 10) -> [member1, 10]
+         * show-bindings가 꺼져 있으면 [****, ****] (EXPLAIN에는 원래 값을 사용한다.)
+         */
+        public List<String> getBindings() {
+            return parameters.stream()
+                    .map(parameter -> !showBindings ? MASKED
+                            : parameter.getArgs().length > 1 ? String.valueOf(parameter.getArgs()[1]) : null)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Getter
+    public static class SlowQuery {
+        private final LocalDateTime capturedAt = LocalDateTime.now();
+        private final String method;
+        private final String operation;
+        private final long elapsedMs;
+        private final List<Statement> statements;
+        private volatile String plan;   // 별도 스레드에서 채워진다. (아직 없으면 null)
+
+        SlowQuery(String method, String operation, long elapsedMs, List<Statement> statements) {
+            this.method = method;
+            this.operation = operation;
+            this.elapsedMs = elapsedMs;
+            this.statements = statements;
+        }
+
+        Statement slowestStatement() {
+            Statement slowest = statements.get(0);
+            for (Statement statement : statements) {
+                if (statement.elapsedMs > slowest.elapsedMs) {
+                    slowest = statement;
+                }
+            }
+            return slowest;
+        }
+    }
+}
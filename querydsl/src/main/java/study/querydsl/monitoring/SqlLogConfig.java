@@ -0,0 +1,55 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * SQL 로그 설정. DataSource를 datasource-proxy로 감싸서 실행된 SQL을 리스너(QueryExecutionListener 빈)에 넘긴다.
+ *     SampledSqlLogger : 샘플링 SQL 로그. 프로필별 설정은 application.yml의 querydsl.sql-log 참고. (enabled: false면 등록하지 않는다.)
+ *     SlowQueryLog : 느린 쿼리의 SQL, 파라미터 수집
+ */
+@Configuration
+public class SqlLogConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "querydsl.sql-log.enabled", havingValue = "true", matchIfMissing = true)
+    public SampledSqlLogger sampledSqlLogger(@Value("${querydsl.sql-log.sample-rate:1.0}") double sampleRate,
+                                             @Value("${querydsl.sql-log.slow-threshold-millis:100}") long slowThresholdMillis,
+                                             @Value("${querydsl.sql-log.buffer-size:8192}") int bufferSize,
+                                             MeterRegistry meterRegistry) {
+        return new SampledSqlLogger(sampleRate, slowThresholdMillis, bufferSize, meterRegistry);
+    }
+
+    /**
+     * BeanPostProcessor는 다른 빈보다 먼저 만들어지므로 static으로 등록하고, 리스너는 DataSource를 감쌀 때 꺼낸다.
+     */
+    @Bean
+    public static BeanPostProcessor sqlLogDataSourcePostProcessor(ObjectProvider<QueryExecutionListener> listeners) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource)) {
+                    return bean;
+                }
+                List<QueryExecutionListener> registered = listeners.orderedStream().collect(Collectors.toList());
+                if (registered.isEmpty()) {
+                    return bean;
+                }
+                ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create((DataSource) bean).name(beanName);
+                registered.forEach(builder::listener);
+                return builder.build();
+            }
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package study.querydsl.monitoring;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * SQL 실행 횟수, 엔티티 로딩 횟수 측정 설정 (N+1 탐지)
+ * SQL : Hibernate StatementInspector (실행 직전의 SQL 문자열, 파라미터는 ?로 남아있으므로 같은 쿼리끼리 묶인다.)
+ * 엔티티 로딩 : Hibernate PostLoad 이벤트 리스너
+ * HTTP 요청마다 범위를 열어서 같은 SQL이 반복되거나 예산을 넘으면 로그를 남긴다. (StatementMonitoringFilter)
+ */
+@Configuration
+public class StatementMonitoringConfig {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public StatementMonitoringConfig(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * EntityManagerFactory를 만들 때 사용되어야 하므로 static으로 등록한다.
+     */
+    @Bean
+    public static HibernatePropertiesCustomizer statementRecorderCustomizer() {
+        StatementInspector inspector = sql -> {
+            StatementRecorder.recordStatement(sql);
+            return sql;
+        };
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+    }
+
+    @PostConstruct
+    public void registerEntityLoadListener() {
+        PostLoadEventListener listener = event -> StatementRecorder.recordEntityLoad(event.getPersister().getEntityName());
+        entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, listener);
+    }
+
+    @Bean
+    public FilterRegistrationBean<StatementMonitoringFilter> statementMonitoringFilter(
+            @Value("${querydsl.statements.repeat-threshold:5}") int repeatThreshold,
+            @Value("${querydsl.statements.request-budget:50}") int requestBudget) {
+        FilterRegistrationBean<StatementMonitoringFilter> registration =
+                new FilterRegistrationBean<>(new StatementMonitoringFilter(repeatThreshold, requestBudget));
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.monitoring;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * HTTP 요청 하나에서 실행된 SQL을 세고,
+ * 같은 SQL이 repeatThreshold번 이상 반복되었거나 전체 SQL 수가 requestBudget을 넘으면 호출 위치와 함께 경고 로그를 남긴다.
+ */
+@Slf4j
+public class StatementMonitoringFilter extends OncePerRequestFilter {
+
+    private final int repeatThreshold;
+    private final int requestBudget;
+
+    public StatementMonitoringFilter(int repeatThreshold, int requestBudget) {
+        this.repeatThreshold = repeatThreshold;
+        this.requestBudget = requestBudget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try (StatementScope scope = StatementRecorder.open()) {
+            filterChain.doFilter(request, response);
+
+            if (scope.getStatementCount() > requestBudget || !scope.getRepeatedStatements(repeatThreshold).isEmpty()) {
+                log.warn("{} {} : {}", request.getMethod(), request.getRequestURI(), scope.report(repeatThreshold));
+            } else if (log.isDebugEnabled()) {
+                log.debug("{} {} : {}", request.getMethod(), request.getRequestURI(), scope.report(repeatThreshold));
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package study.querydsl.monitoring;
+
+/**
+ * 스레드별로 열려있는 StatementScope에 SQL 실행과 엔티티 로딩을 기록한다.
+ * Hibernate StatementInspector, PostLoad 리스너에서 호출되고 (StatementMonitoringConfig 참고),
+ * 요청 필터와 테스트 확장(@StatementBudget)에서 범위를 연다.
+ *
+ * try (StatementScope scope = StatementRecorder.open()) {
+ *     ...
+ *     scope.getRepeatedStatements(5);
+ * }
+ */
+public final class StatementRecorder {
+
+    private static final ThreadLocal<StatementScope> CURRENT = new ThreadLocal<>();
+
+    private StatementRecorder() {
+    }
+
+    /**
+     * 새 범위를 연다. 이미 열린 범위가 있으면 안쪽 범위가 되고, 기록은 바깥 범위에도 합산된다.
+     */
+    public static StatementScope open() {
+        StatementScope scope = new StatementScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static StatementScope current() {
+        return CURRENT.get();
+    }
+
+    static void recordStatement(String sql) {
+        StatementScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.recordStatement(sql);
+        }
+    }
+
+    static void recordEntityLoad(String entityName) {
+        StatementScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.recordEntityLoad(entityName);
+        }
+    }
+
+    static void close(StatementScope scope, StatementScope parent) {
+        if (CURRENT.get() == scope) {
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+            }
+        }
+    }
+}
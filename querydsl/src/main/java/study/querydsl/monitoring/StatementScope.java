@@ -0,0 +1,102 @@
+package study.querydsl.monitoring;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 하나의 범위(HTTP 요청 하나, 테스트 메서드 하나)에서 실행된 SQL과 엔티티 로딩 횟수.
+ * StatementRecorder.open()으로 열고, 같은 스레드에서 실행된 SQL만 기록된다. (다른 스레드의 count 쿼리 등은 제외)
+ */
+public class StatementScope implements AutoCloseable {
+
+    private final StatementScope parent;
+    private final Map<String, StatementStat> statements = new LinkedHashMap<>();
+    private final Map<String, Integer> entityLoads = new LinkedHashMap<>();
+    private int statementCount;
+    private int entityLoadCount;
+    private boolean closed;
+
+    StatementScope(StatementScope parent) {
+        this.parent = parent;
+    }
+
+    void recordStatement(String sql) {
+        statementCount++;
+        StatementStat stat = statements.get(sql);
+        if (stat == null) {
+            // 호출 위치는 처음 실행될 때만 구한다. (stack trace 비용)
+            statements.put(sql, new StatementStat(sql, CallSites.current()));
+        } else {
+            stat.count++;
+        }
+        if (parent != null) {
+            parent.recordStatement(sql);
+        }
+    }
+
+    void recordEntityLoad(String entityName) {
+        entityLoadCount++;
+        entityLoads.merge(entityName, 1, Integer::sum);
+        if (parent != null) {
+            parent.recordEntityLoad(entityName);
+        }
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public int getEntityLoadCount() {
+        return entityLoadCount;
+    }
+
+    public Map<String, Integer> getEntityLoads() {
+        return new LinkedHashMap<>(entityLoads);
+    }
+
+    /**
+     * 같은 SQL이 threshold번 이상 실행된 목록. (N+1 의심) 많이 실행된 순서.
+     */
+    public List<RepeatedStatement> getRepeatedStatements(int threshold) {
+        List<RepeatedStatement> repeated = new ArrayList<>();
+        for (StatementStat stat : statements.values()) {
+            if (stat.count >= threshold) {
+                repeated.add(new RepeatedStatement(stat.sql, stat.count, stat.callSite));
+            }
+        }
+        repeated.sort(Comparator.comparingInt(RepeatedStatement::getCount).reversed());
+        return repeated;
+    }
+
+    public String report(int repeatThreshold) {
+        StringBuilder report = new StringBuilder()
+                .append(statementCount).append(" statements, ")
+                .append(entityLoadCount).append(" entity loads ").append(entityLoads);
+        for (RepeatedStatement statement : getRepeatedStatements(repeatThreshold)) {
+            report.append(System.lineSeparator()).append("  ").append(statement);
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            StatementRecorder.close(this, parent);
+        }
+    }
+
+    private static class StatementStat {
+        private final String sql;
+        private final String callSite;
+        private int count = 1;
+
+        StatementStat(String sql, String callSite) {
+            this.sql = sql;
+            this.callSite = callSite;
+        }
+    }
+}
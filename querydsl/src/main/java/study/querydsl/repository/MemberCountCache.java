@@ -0,0 +1,49 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.support.CacheMetrics;
+import study.querydsl.repository.support.InvalidatableCache;
+import study.querydsl.repository.support.QueryCacheInvalidator;
+import study.querydsl.repository.support.TtlCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 페이징 조회의 total count 캐시.
+ * 같은 검색 조건으로 페이지만 넘길 때는 total이 거의 변하지 않으므로 count 쿼리를 매번 실행하지 않는다.
+ * 키는 정규화된 검색 조건이며, Member/Team이 변경되면 전부 비운다.
+ * 읽기/쓰기 트랜잭션 안이거나 현재 트랜잭션에서 Member/Team을 변경했으면 캐시를 거치지 않는다.
+ *     (flush 전 변경도 count에 반영되도록. QueryCacheInvalidator.shouldBypassCaches)
+ * 지표 : CacheMetrics 참고 (cache=member.count)
+ */
+@Component
+public class MemberCountCache implements InvalidatableCache {
+
+    private static final String CACHE_NAME = "member.count";
+
+    private final TtlCache<MemberSearchCondition, Long> cache;
+
+    public MemberCountCache(MeterRegistry meterRegistry,
+                            @Value("${querydsl.cache.count.ttl-seconds:30}") long ttlSeconds,
+                            @Value("${querydsl.cache.count.max-size:1000}") int maxSize) {
+        this.cache = new TtlCache<>(ttlSeconds, TimeUnit.SECONDS, maxSize);
+
+        CacheMetrics.register(meterRegistry, CACHE_NAME, cache);
+    }
+
+    public long get(MemberSearchCondition condition, LongSupplier countQuery) {
+        if (QueryCacheInvalidator.shouldBypassCaches()) {
+            return countQuery.getAsLong();
+        }
+        return cache.get(condition.normalized(), countQuery::getAsLong);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -1,37 +1,40 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.BooleanBuilder;
-import com.querydsl.core.types.Predicate;
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
-import org.springframework.util.StringUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
-import study.querydsl.entity.QMember;
-import study.querydsl.entity.QTeam;
+import study.querydsl.monitoring.QueryMetrics;
+import study.querydsl.repository.support.ReadOnlyQueries;
 
 import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.Optional;
 
 import static study.querydsl.entity.QMember.*;
-import static study.querydsl.entity.QTeam.*;
 
 @Repository
+@Transactional(readOnly = true)
 public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchQueryTemplates searchQueryTemplates;
+    private final MemberSearchResultCache resultCache;
 
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, MemberSearchResultCache resultCache,
+                               MemberSearchQueryTemplates searchQueryTemplates, QueryMetrics queryMetrics) {
         // 순수 JPA를 사용하기 때문에 entityManager 필요.
         this.em = em;
         // querydsl을 사용할 때에 entitymanager를 받아와서 사용하도록 생성자 생성
-        this.queryFactory = new JPAQueryFactory(em);
+        // 쿼리 실행 시간을 메서드별로 기록하고, 조회 전용 트랜잭션에서 조회한 엔티티는 스냅샷을 만들지 않는 factory
+        this.queryFactory = ReadOnlyQueries.queryFactory(em, queryMetrics);
+        this.searchQueryTemplates = searchQueryTemplates;
+        this.resultCache = resultCache;
     }
 
     // QuerydslApplication에 bean으로 queryFactory 등록시 바로 injection 받기 가능.
@@ -41,10 +44,34 @@ public class MemberJpaRepository {
 //        this.queryFactory = queryFactory;
 //    }
 
+    @Transactional
     public void save(Member member){
         em.persist(member);
     }
 
+    /**
+     * 대량 저장.
+     * chunkSize개씩 persist한 뒤 flush + clear 해서 영속성 컨텍스트가 커지지 않게 한다.
+     * insert는 hibernate.jdbc.batch_size 단위로 묶여서 한번에 전송된다. (chunkSize를 batch_size의 배수로 맞추는게 좋다.)
+     * 중간에 clear하므로 호출 전에 영속 상태였던 엔티티도 모두 준영속이 된다. 트랜잭션 안에서 호출해야 한다.
+     * @return 저장한 회원 수
+     */
+    @Transactional
+    public long saveAll(Iterable<Member> members, int chunkSize){
+        Assert.isTrue(chunkSize > 0, "Chunk size must be greater than zero!");
+        long count = 0;
+        for (Member member : members) {
+            em.persist(member);
+            if (++count % chunkSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        return count;
+    }
+
     public Optional<Member> findById(Long id){
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
@@ -71,73 +98,23 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    /**
+     * BooleanBuilder로 조건을 조립하던 검색. 조건 모양이 searchByWhere와 같으므로 같은 템플릿을 사용한다.
+     * 요청마다 조건 트리를 만들어 JPQL로 직렬화하지 않고, 모양별로 직렬화해둔 JPQL에 값만 바인딩한다. (MemberSearchQueryTemplates)
+     */
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition){
-
-        BooleanBuilder builder = new BooleanBuilder();
-        // 웹에서 값이 넘어올 때 null, "" 둘다 넘어올 수 있으니 전부 다 걸러주기 위해 hasText() 사용
-        if(StringUtils.hasText(condition.getUsername())){
-            builder.and(member.username.eq(condition.getUsername()));
-        }
-        if (StringUtils.hasText(condition.getTeamName())) {
-            builder.and(team.name.eq(condition.getTeamName()));
-        }
-        if (condition.getAgeGoe() != null) {
-            builder.and(member.age.goe(condition.getAgeGoe()));
-        }
-        if (condition.getAgeLoe() != null) {
-            builder.and(member.age.loe(condition.getAgeLoe()));
-        }
-
-        // builder를 사용한 동적쿼링과 동시에 성능 최적화 수행.
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId")
-                        , member.username
-                        , member.age
-                        , team.id.as("teamId")
-                        , team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(builder)
-                .fetch();
+        return resultCache.list("MemberJpaRepository.searchByBuilder", condition,
+                () -> searchQueryTemplates.search(condition));
     }
 
+    /**
+     * where 다중 파라미터 검색. 조건 모양(16가지)별로 미리 직렬화해둔 JPQL을 재사용한다. (MemberSearchQueryTemplates)
+     * 조건식(username, teamName, ageGoe, ageLoe)은 MemberSearchQueryTemplates.build에 있다.
+     */
     public List<MemberTeamDto> searchByWhere(MemberSearchCondition condition){
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId")
-                        , member.username
-                        , member.age
-                        , team.id.as("teamId")
-                        , team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername())
-                        , teamNameEq(condition.getTeamName())
-                        , ageGoe(condition.getAgeGoe())
-                        , ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
-    }
-
-    // Predicate보다는 BooleanExpression를 쓰는게 낫다. 나중에 합칠때 유연하게 대처 가능.
-    private BooleanExpression usernameEq(String username) {
-        return StringUtils.hasText(username) ? member.username.eq(username) : null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        return StringUtils.hasText(teamName) ? team.name.eq(teamName) : null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-    }
-
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+        // /v1/members에서 같은 조건으로 반복 조회하므로 결과 캐시를 거친다.
+        return resultCache.list("MemberJpaRepository.searchByWhere", condition,
+                () -> searchQueryTemplates.search(condition));
     }
 
 }
@@ -2,13 +2,21 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.KeysetSlice;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> searchByWhere(MemberSearchCondition condition);
+    Stream<MemberTeamDto> streamByWhere(MemberSearchCondition condition, int fetchSize);
     Page<MemberTeamDto> searchByWherePageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchByWherePageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchByWherePageParallel(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchByWherePageApproximate(MemberSearchCondition condition, Pageable pageable);
+    Slice<MemberTeamDto> searchByWhereSlice(MemberSearchCondition condition, Pageable pageable);
+    KeysetSlice<MemberTeamDto> searchByWhereKeyset(MemberSearchCondition condition, String cursor, int size);
 }
@@ -4,34 +4,96 @@ import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.MemberTeamDtoMapper;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.monitoring.QueryMetrics;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.CountQueries;
+import study.querydsl.repository.support.EstimatedPage;
+import study.querydsl.repository.support.Keyset;
+import study.querydsl.repository.support.KeysetPagination;
+import study.querydsl.repository.support.KeysetSlice;
+import study.querydsl.repository.support.ParallelCountExecutor;
+import study.querydsl.repository.support.QueryStreams;
+import study.querydsl.repository.support.ReadOnlyQueries;
+import study.querydsl.repository.support.RowCountEstimator;
+import study.querydsl.repository.support.SlicePagination;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
 
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
+// 검색 전용 구현. 스프링 데이터 기본 메서드처럼 조회 전용 트랜잭션으로 실행한다.
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    // 나이순 정렬, 나이가 같으면 member.id로 순서를 고정한다.
+    private static final Keyset<MemberTeamDto, Integer> AGE_KEYSET = Keyset.of(
+            member.age, member.id, Integer::valueOf, MemberTeamDto::getAge, MemberTeamDto::getMemberId);
+
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final ParallelCountExecutor parallelCountExecutor;
+    private final MemberCountCache countCache;
+    private final MemberSearchResultCache resultCache;
+    private final RowCountEstimator rowCountEstimator;
+    private final TeamNameCache teamNameCache;
+    private final MemberSearchQueryTemplates searchQueryTemplates;
+    private final long approximateCountThreshold;
 
-    public MemberRepositoryImpl(EntityManager em){
-        this.queryFactory = new JPAQueryFactory(em);
+    public MemberRepositoryImpl(EntityManager em, ParallelCountExecutor parallelCountExecutor, MemberCountCache countCache,
+                                MemberSearchResultCache resultCache, RowCountEstimator rowCountEstimator,
+                                TeamNameCache teamNameCache, MemberSearchQueryTemplates searchQueryTemplates,
+                                QueryMetrics queryMetrics,
+                                @Value("${querydsl.paging.approximate-count.threshold:100000}") long approximateCountThreshold){
+        this.em = em;
+        // 쿼리마다 실행 시간, row 수를 메서드별로 기록한다. 조회 전용 힌트 적용
+        this.queryFactory = ReadOnlyQueries.queryFactory(em, queryMetrics);
+        this.parallelCountExecutor = parallelCountExecutor;
+        this.countCache = countCache;
+        this.resultCache = resultCache;
+        this.rowCountEstimator = rowCountEstimator;
+        this.teamNameCache = teamNameCache;
+        this.searchQueryTemplates = searchQueryTemplates;
+        this.approximateCountThreshold = approximateCountThreshold;
     }
 
+    /**
+     * 조건 모양별로 직렬화해둔 JPQL에 값만 바인딩한다. (MemberSearchQueryTemplates)
+     */
     @Override
     public List<MemberTeamDto> searchByWhere(MemberSearchCondition condition){
-        return queryFactory
-                .select(new QMemberTeamDto(
+        // 같은 조건의 반복 조회는 결과 캐시에서 바로 돌려준다.
+        return resultCache.list("searchByWhere", condition, () -> searchQueryTemplates.search(condition));
+    }
+
+    /**
+     * searchByWhere의 스트리밍 버전.
+     * 결과 전체를 List로 만들지 않고 fetchSize만큼씩 읽어서 흘려보내기 때문에 결과가 아무리 커도 메모리가 일정하다.
+     * 트랜잭션 안에서 소비해야 하며, 사용 후 반드시 close 해야 한다.
+     * row가 많으므로 리플렉션 없이 생성자를 호출하는 MemberTeamDtoMapper를 사용한다.
+     * @param condition
+     * @param fetchSize JDBC fetch size
+     * @return
+     */
+    @Override
+    public Stream<MemberTeamDto> streamByWhere(MemberSearchCondition condition, int fetchSize) {
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(MemberTeamDtoMapper.constructor(
                         member.id.as("memberId")
                         , member.username
                         , member.age
@@ -45,8 +107,9 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         , teamNameEq(condition.getTeamName())
                         , ageGoe(condition.getAgeGoe())
                         , ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+                );
+
+        return QueryStreams.stream(query, fetchSize, em);
     }
 
     /**
@@ -59,6 +122,10 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
      */
     @Override
     public Page<MemberTeamDto> searchByWherePageSimple(MemberSearchCondition condition, Pageable pageable) {
+        return resultCache.page("searchByWherePageSimple", condition, pageable, () -> fetchPageSimple(condition, pageable));
+    }
+
+    private Page<MemberTeamDto> fetchPageSimple(MemberSearchCondition condition, Pageable pageable) {
         QueryResults<MemberTeamDto> results = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId")
@@ -94,7 +161,11 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
      */
     @Override
     public Page<MemberTeamDto> searchByWherePageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+        return resultCache.page("searchByWherePageComplex", condition, pageable, () -> fetchPageComplex(condition, pageable));
+    }
+
+    private Page<MemberTeamDto> fetchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        JPAQuery<MemberTeamDto> contentQuery = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId")
                         , member.username
@@ -109,7 +180,16 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         , teamNameEq(condition.getTeamName())
                         , ageGoe(condition.getAgeGoe())
                         , ageLoe(condition.getAgeLoe())
-                )
+                );
+
+        /**
+         * count 쿼리는 컨텐츠 쿼리에서 만든다.
+         * 조건에서 team을 쓰지 않으면(teamName 조건이 없으면) left join을 제거한 select count(member) from Member member 가 된다.
+         * 정렬도 제거된다.
+         * */
+        JPAQuery<?> countQuery = CountQueries.derive(em, contentQuery);
+
+        List<MemberTeamDto> content = contentQuery
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetch();
@@ -121,8 +201,31 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
 //        count 쿼리가 생략 가능한 경우 생략해서 처리
     //        페이지 시작이면서 컨텐츠 사이즈가 페이지 사이즈보다 작을 때 -> 총 100개를 가져올 수 있는데, 첫페이지에서 10개를 가져오면 카운트 필요X
     //        마지막 페이지 일 때 (offset + 컨텐츠 사이즈를 더해서 전체 사이즈 구함) -> 마지막 페이지면 카운트 필요X
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
+        // 같은 조건으로 페이지만 넘기는 경우 total은 거의 변하지 않으므로 캐시된 count를 사용한다.
+        return PageableExecutionUtils.getPage(content, pageable, () -> countCache.get(condition, countQuery::fetchCount));
+//        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * 근사 count 페이징
+     * 검색 조건이 없으면 전체 member 수를 count(*) 대신 DB 통계 정보로 추정한다.
+     * 추정치가 threshold보다 작으면 count 비용이 크지 않으므로 정확한 count를 사용한다.
+     * 검색 조건이 있으면 통계 정보로는 결과 수를 알 수 없으므로 정확한 count(캐시)를 사용한다.
+     * 응답의 estimated 값으로 total이 근사값인지 알려준다.
+     * @param condition
+     * @param pageable
+     * @return
+     */
+    @Override
+    public Page<MemberTeamDto> searchByWherePageApproximate(MemberSearchCondition condition, Pageable pageable) {
+        JPAQuery<MemberTeamDto> contentQuery = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId")
+                        , member.username
+                        , member.age
+                        , team.id.as("teamId")
+                        , team.name.as("teamName")
+                ))
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(
@@ -131,17 +234,143 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         , ageGoe(condition.getAgeGoe())
                         , ageLoe(condition.getAgeLoe())
                 );
+        JPAQuery<?> countQuery = CountQueries.derive(em, contentQuery);
 
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);    // 메소드 참조를 사용해서 위의 기능 사용...
-//        return new PageImpl<>(content, pageable, total);
+        List<MemberTeamDto> content = contentQuery
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        // count가 생략되는 경우(첫 페이지가 덜 찼거나 마지막 페이지)에는 total이 정확하다.
+        return EstimatedPage.of(content, pageable, () -> {
+            if (isUnfiltered(condition)) {
+                OptionalLong estimate = rowCountEstimator.estimate(Member.class);
+                if (estimate.isPresent() && estimate.getAsLong() >= approximateCountThreshold) {
+                    return EstimatedPage.Total.estimated(estimate.getAsLong());
+                }
+            }
+            return EstimatedPage.Total.exact(countCache.get(condition, countQuery::fetchCount));
+        });
+    }
+
+    /**
+     * searchByWherePageComplex와 같은 쿼리지만 count 쿼리를 별도 커넥션에서 컨텐츠 쿼리와 동시에 실행한다.
+     * 응답 시간이 두 쿼리의 합이 아니라 둘 중 긴 쪽이 된다.
+     * count가 필요없는 경우(첫 페이지가 덜 찼거나 마지막 페이지)에는 실행 중인 count를 취소한다.
+     * count 쿼리는 같은 컨텐츠 쿼리에서 CountQueries로 만든다. (count 스레드의 EntityManager 사용)
+     * @param condition
+     * @param pageable
+     * @return
+     */
+    @Override
+    public Page<MemberTeamDto> searchByWherePageParallel(MemberSearchCondition condition, Pageable pageable) {
+        // count 쿼리는 다른 스레드(EntityManager)에서 만들어지므로 팀 id는 미리 찾아둔다.
+        BooleanExpression teamNameEq = teamNameEq(condition.getTeamName());
+        return parallelCountExecutor.getPage(pageable, () -> parallelSearchQuery(queryFactory, condition, teamNameEq)
+                        .offset(pageable.getOffset())
+                        .limit(pageable.getPageSize())
+                        .fetch()
+                , countQueryFactory -> CountQueries.derive(countQueryFactory,
+                        parallelSearchQuery(countQueryFactory, condition, teamNameEq)));
+    }
+
+    private JPAQuery<MemberTeamDto> parallelSearchQuery(JPAQueryFactory factory, MemberSearchCondition condition,
+                                                        BooleanExpression teamNameEq) {
+        return factory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId")
+                        , member.username
+                        , member.age
+                        , team.id.as("teamId")
+                        , team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername())
+                        , teamNameEq
+                        , ageGoe(condition.getAgeGoe())
+                        , ageLoe(condition.getAgeLoe())
+                );
+    }
+
+    /**
+     * count 없는 Slice 페이징
+     * 전체 개수 대신 다음 페이지가 있는지만 필요한 화면에서 사용한다.
+     * pageSize + 1개를 가져와서 다음 페이지 여부를 판단하고, count 쿼리는 실행하지 않는다.
+     * @param condition
+     * @param pageable
+     * @return
+     */
+    @Override
+    public Slice<MemberTeamDto> searchByWhereSlice(MemberSearchCondition condition, Pageable pageable) {
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId")
+                        , member.username
+                        , member.age
+                        , team.id.as("teamId")
+                        , team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername())
+                        , teamNameEq(condition.getTeamName())
+                        , ageGoe(condition.getAgeGoe())
+                        , ageLoe(condition.getAgeLoe())
+                );
+
+        return SlicePagination.fetch(query, pageable);
+    }
+
+    /**
+     * 키셋(seek) 페이징
+     * offset은 앞 페이지의 row를 모두 읽고 버리기 때문에 뒤로 갈수록 느려진다.
+     * 마지막으로 읽은 (age, id) 이후부터 읽어오면 10000번째 페이지도 첫 페이지와 같은 비용으로 가져올 수 있다.
+     * count 쿼리는 수행하지 않는다.
+     * @param condition
+     * @param cursor 이전 페이지 응답의 nextCursor, 첫 페이지는 null
+     * @param size
+     * @return
+     */
+    @Override
+    public KeysetSlice<MemberTeamDto> searchByWhereKeyset(MemberSearchCondition condition, String cursor, int size) {
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId")
+                        , member.username
+                        , member.age
+                        , team.id.as("teamId")
+                        , team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername())
+                        , teamNameEq(condition.getTeamName())
+                        , ageGoe(condition.getAgeGoe())
+                        , ageLoe(condition.getAgeLoe())
+                );
+
+        return KeysetPagination.fetch(query, AGE_KEYSET, cursor, size);
+    }
+
+    private boolean isUnfiltered(MemberSearchCondition condition) {
+        MemberSearchCondition normalized = condition.normalized();
+        return normalized.getUsername() == null
+                && normalized.getTeamName() == null
+                && normalized.getAgeGoe() == null
+                && normalized.getAgeLoe() == null;
     }
 
     private BooleanExpression usernameEq(String username) {
         return StringUtils.hasText(username) ? member.username.eq(username) : null;
     }
 
+    // 팀 이름은 TeamNameCache에서 id로 바꿔 member.team.id로 거른다. (team 조인이 조건에 필요 없다)
     private BooleanExpression teamNameEq(String teamName) {
-        return StringUtils.hasText(teamName) ? team.name.eq(teamName) : null;
+        return StringUtils.hasText(teamName) ? teamNameCache.teamNameEq(teamName) : null;
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
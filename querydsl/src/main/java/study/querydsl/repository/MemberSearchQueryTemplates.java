@@ -0,0 +1,156 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.JPAProvider;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUtil;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.monitoring.QueryMetrics;
+import study.querydsl.repository.support.ReadOnlyQueries;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberSearchCondition 검색 쿼리의 모양(shape)별 JPQL 템플릿 캐시.
+ *
+ * 동적 쿼리는 요청마다 BooleanExpression 트리를 새로 만들고 JPQL 문자열로 다시 직렬화한다.
+ * 하지만 검색 조건 4개가 있고 없고에 따라 쿼리 모양은 2^4 = 16가지 뿐이다. (팀 조건을 id로 바꾼 모양까지 24가지)
+ * 모양별로 값 대신 Param을 넣은 쿼리를 한번만 만들어 직렬화해두고, 요청마다 파라미터 값만 바인딩한다.
+ * (같은 JPQL 문자열이 들어가므로 Hibernate의 query plan cache도 항상 hit 된다.)
+ * 팀 이름 조건은 TeamNameCache로 찾은 팀 id를 member.team.id에 바인딩한다. 그런 이름의 팀이 없으면 쿼리를 실행하지 않고,
+ * 같은 이름의 팀이 여러개면 team.name = ? 모양(TEAM_NAME)을 사용한다.
+ *
+ * MemberJpaRepository.searchByWhere, searchByBuilder, MemberRepositoryImpl.searchByWhere가 사용한다.
+ * 다른 검색처럼 실행 시간은 QueryMetrics에 기록하고(조건 모양 = 템플릿의 where), 조회 전용 힌트를 적용한다.
+ */
+@Component
+public class MemberSearchQueryTemplates {
+
+    private static final int USERNAME = 1;
+    private static final int TEAM_NAME = 1 << 1;
+    private static final int AGE_GOE = 1 << 2;
+    private static final int AGE_LOE = 1 << 3;
+    private static final int TEAM_ID = 1 << 4;     // 팀 이름이 팀 하나로 정해지면 TEAM_NAME 대신 사용
+
+    private static final Param<String> USERNAME_PARAM = new Param<>(String.class, "username");
+    private static final Param<String> TEAM_NAME_PARAM = new Param<>(String.class, "teamName");
+    private static final Param<Long> TEAM_ID_PARAM = new Param<>(Long.class, "teamId");
+    private static final Param<Integer> AGE_GOE_PARAM = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE_PARAM = new Param<>(Integer.class, "ageLoe");
+
+    private static final QMemberTeamDto PROJECTION = new QMemberTeamDto(
+            member.id.as("memberId")
+            , member.username
+            , member.age
+            , team.id.as("teamId")
+            , team.name.as("teamName")
+    );
+
+    private final EntityManager em;
+    private final TeamNameCache teamNameCache;
+    private final QueryMetrics queryMetrics;
+    private final JPQLTemplates templates;
+    private final Map<Integer, Template> cache = new ConcurrentHashMap<>();
+
+    public MemberSearchQueryTemplates(EntityManager em, TeamNameCache teamNameCache, QueryMetrics queryMetrics) {
+        this.em = em;
+        this.teamNameCache = teamNameCache;
+        this.queryMetrics = queryMetrics;
+        this.templates = JPAProvider.getTemplates(em);
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        int shape = shapeOf(condition);
+        Map<ParamExpression<?>, Object> params = new HashMap<>();
+        if ((shape & USERNAME) != 0) params.put(USERNAME_PARAM, condition.getUsername());
+        if ((shape & TEAM_NAME) != 0) {
+            List<Long> teamIds = teamNameCache.findIds(condition.getTeamName());
+            if (teamIds.isEmpty()) {
+                return Collections.emptyList();
+            }
+            if (teamIds.size() == 1) {
+                shape = shape & ~TEAM_NAME | TEAM_ID;
+                params.put(TEAM_ID_PARAM, teamIds.get(0));
+            } else {
+                params.put(TEAM_NAME_PARAM, condition.getTeamName());
+            }
+        }
+        if ((shape & AGE_GOE) != 0) params.put(AGE_GOE_PARAM, condition.getAgeGoe());
+        if ((shape & AGE_LOE) != 0) params.put(AGE_LOE_PARAM, condition.getAgeLoe());
+
+        Template template = cache.computeIfAbsent(shape, this::build);
+        Query query = ReadOnlyQueries.readOnly(em.createQuery(template.jpql));
+        JPAUtil.setConstants(query, template.constantToLabel, params);
+
+        return queryMetrics.record("fetch", template.where, () -> toDtos(query.getResultList()), List::size);
+    }
+
+    private static List<MemberTeamDto> toDtos(List<?> rows) {
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            result.add(PROJECTION.newInstance((Object[]) row));
+        }
+        return result;
+    }
+
+    /**
+     * 값이 있는 조건 필드를 비트로 표시한 값. 웹에서 넘어오는 "" 는 조건 없음으로 처리한다.
+     */
+    static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (StringUtils.hasText(condition.getUsername())) shape |= USERNAME;
+        if (StringUtils.hasText(condition.getTeamName())) shape |= TEAM_NAME;
+        if (condition.getAgeGoe() != null) shape |= AGE_GOE;
+        if (condition.getAgeLoe() != null) shape |= AGE_LOE;
+        return shape;
+    }
+
+    private Template build(int shape) {
+        JPAQuery<MemberTeamDto> query = new JPAQuery<Void>()
+                .select(PROJECTION)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        (shape & USERNAME) != 0 ? member.username.eq(USERNAME_PARAM) : null
+                        , (shape & TEAM_NAME) != 0 ? team.name.eq(TEAM_NAME_PARAM) : null
+                        , (shape & TEAM_ID) != 0 ? member.team.id.eq(TEAM_ID_PARAM) : null
+                        , (shape & AGE_GOE) != 0 ? member.age.goe(AGE_GOE_PARAM) : null
+                        , (shape & AGE_LOE) != 0 ? member.age.loe(AGE_LOE_PARAM) : null
+                );
+
+        JPQLSerializer serializer = new JPQLSerializer(templates, em);
+        serializer.serialize(query.getMetadata(), false, null);
+        return new Template(serializer.toString(), serializer.getConstantToLabel(), query.getMetadata().getWhere());
+    }
+
+    private static class Template {
+        private final String jpql;
+        private final Map<Object, String> constantToLabel;
+        private final Predicate where;      // 지표의 조건 모양
+
+        Template(String jpql, Map<Object, String> constantToLabel, Predicate where) {
+            this.jpql = jpql;
+            this.constantToLabel = Collections.unmodifiableMap(new HashMap<>(constantToLabel));
+            this.where = where;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.support.CacheMetrics;
+import study.querydsl.repository.support.InvalidatableCache;
+import study.querydsl.repository.support.QueryCacheInvalidator;
+import study.querydsl.repository.support.TtlCache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * MemberTeamDto 검색 결과 캐시.
+ * 인기 있는 팀 이름, 나이대처럼 같은 검색 조건이 반복해서 들어오면 DB까지 가지 않는다.
+ *
+ * 키 : 조회 종류 + 정규화된 검색 조건 + 페이지 정보
+ * 무게 : 결과 row 수 (max-rows를 넘으면 오래 사용하지 않은 결과부터 제거)
+ * Member/Team이 변경되거나 벌크 연산이 실행되면 전부 비운다.
+ * 같은 키를 동시에 조회하면 DB 조회는 한번만 일어난다.
+ * 읽기/쓰기 트랜잭션이거나 현재 트랜잭션에서 Member/Team을 변경했으면 캐시를 거치지 않는다.
+ *     (flush 전 변경도 결과에 반영되고, 커밋되지 않은 결과가 다른 요청이 보는 캐시에 들어가지 않도록.
+ *     QueryCacheInvalidator.shouldBypassCaches)
+ * querydsl.cache.search.enabled=false 이면 항상 DB에서 조회한다.
+ * 지표 : CacheMetrics 참고 (cache=member.search)
+ */
+@Component
+public class MemberSearchResultCache implements InvalidatableCache {
+
+    private static final String CACHE_NAME = "member.search";
+
+    private final boolean enabled;
+    private final TtlCache<List<Object>, Object> cache;
+
+    public MemberSearchResultCache(MeterRegistry meterRegistry,
+                                   @Value("${querydsl.cache.search.enabled:true}") boolean enabled,
+                                   @Value("${querydsl.cache.search.ttl-seconds:10}") long ttlSeconds,
+                                   @Value("${querydsl.cache.search.max-rows:100000}") long maxRows) {
+        this.enabled = enabled;
+        this.cache = new TtlCache<>(ttlSeconds, TimeUnit.SECONDS, maxRows, MemberSearchResultCache::rowsOf);
+        CacheMetrics.register(meterRegistry, CACHE_NAME, cache);
+    }
+
+    public <T> List<T> list(String query, MemberSearchCondition condition, Supplier<List<T>> loader) {
+        // 캐시된 결과를 여러 요청이 같이 사용하므로 수정할 수 없게 만든다.
+        return get(Arrays.asList(query, condition.normalized()), () -> Collections.unmodifiableList(loader.get()));
+    }
+
+    public <T extends Slice<?>> T page(String query, MemberSearchCondition condition, Pageable pageable, Supplier<T> loader) {
+        Object pageKey = pageable.isPaged()
+                ? Arrays.asList(pageable.getOffset(), pageable.getPageSize(), pageable.getSort())
+                : "unpaged";
+        return get(Arrays.asList(query, condition.normalized(), pageKey), loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(List<Object> key, Supplier<T> loader) {
+        if (!enabled || QueryCacheInvalidator.shouldBypassCaches()) {
+            return loader.get();
+        }
+        return (T) cache.get(key, loader::get);
+    }
+
+    private static int rowsOf(Object value) {
+        if (value instanceof Slice) {
+            return ((Slice<?>) value).getNumberOfElements() + 1;
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size() + 1;
+        }
+        return 1;
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
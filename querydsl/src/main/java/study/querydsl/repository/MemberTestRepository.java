@@ -1,27 +1,49 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.repository.support.BulkProgress;
+import study.querydsl.repository.support.Keyset;
+import study.querydsl.repository.support.KeysetSlice;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static study.querydsl.entity.QMember.*;
 import static study.querydsl.entity.QTeam.team;
 
 @Repository
+@Transactional(readOnly = true)
 public class MemberTestRepository extends Querydsl4RepositorySupport {
 
-    public MemberTestRepository(){
-        super(Member.class);
+    // username은 null일 수 있으므로 ''로 바꿔서 비교한다. (TeamMemberRepository와 같다)
+    private static final Keyset<Member, String> USERNAME_KEYSET = Keyset.of(
+            Expressions.stringTemplate("coalesce({0}, '')", member.username), member.id, key -> key,
+            m -> m.getUsername() != null ? m.getUsername() : "", Member::getId);
+
+    private final TeamNameCache teamNameCache;
+
+    public MemberTestRepository(TeamNameCache teamNameCache){
+        // 조회 전용 모드 : 조회 전용 트랜잭션에서 조회한 Member는 스냅샷을 만들지 않는다.
+        // 읽기/쓰기 트랜잭션에서 호출하면 변경 감지가 그대로 동작한다.
+        super(Member.class, true);
+        this.teamNameCache = teamNameCache;
     }
 
     public List<Member> basicSelect(){
@@ -51,9 +73,11 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                         , ageLoe(condition.getAgeLoe())
                 );
 
+        // teamName 조건이 없으면 count 쿼리에서는 team 조인이 제거된다.
+        JPAQuery<?> countQuery = countQueryOf(query);
         List<Member> content = getQuerydsl().applyPagination(pageable, query).fetch();
 
-        return PageableExecutionUtils.getPage(content, pageable, query::fetchCount);
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
     }
 
     // 사실 위의 코드와 완전히 동일한 로직의 코드이다.
@@ -104,12 +128,161 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
         );
     }
 
+    /**
+     * deferred join 페이징
+     * offset이 큰 페이지에서도 먼저 조건에 맞는 member.id만 정렬, 페이징해서 가져오고
+     * 그 id들에 대해서만 team 조인과 dto projection을 수행한다.
+     * id 쿼리는 team left join을 유지하므로 team.name 으로 정렬해도 팀이 없는 회원이 빠지지 않는다.
+     * count 쿼리에서는 조건이 team을 참조하지 않으면 team 조인이 제거된다. (CountQueries 참고)
+     * 정렬에는 항상 member.id가 마지막 기준으로 추가되어 페이지 간 순서가 안정적이다.
+     * @param condition
+     * @param pageable
+     * @return
+     */
+    public Page<MemberTeamDto> applyDeferredJoinPagination(MemberSearchCondition condition, Pageable pageable){
+        return applyDeferredJoinPagination(pageable, member.id
+                , idQuery -> idQuery
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                usernameEq(condition.getUsername())
+                                , teamNameEq(condition.getTeamName())
+                                , ageGoe(condition.getAgeGoe())
+                                , ageLoe(condition.getAgeLoe())
+                        )
+                , contentQuery -> contentQuery
+                        .select(new QMemberTeamDto(
+                                member.id.as("memberId")
+                                , member.username
+                                , member.age
+                                , team.id.as("teamId")
+                                , team.name.as("teamName")
+                        ))
+                        .from(member)
+                        .leftJoin(member.team, team)
+                , MemberTeamDto::getMemberId
+        );
+    }
+
+    /**
+     * count 쿼리 없이 다음 페이지 존재 여부만 확인하는 Slice 페이징
+     * @param condition
+     * @param pageable
+     * @return
+     */
+    public Slice<Member> applySlicePagination(MemberSearchCondition condition, Pageable pageable){
+        return applySlicePagination(pageable, query -> query
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                usernameEq(condition.getUsername())
+                                , teamNameEq(condition.getTeamName())
+                                , ageGoe(condition.getAgeGoe())
+                                , ageLoe(condition.getAgeLoe())
+                        )
+        );
+    }
+
+    /**
+     * applyPagination2와 동일하지만 count 쿼리를 별도 커넥션에서 동시에 실행한다.
+     * @param condition
+     * @param pageable
+     * @return
+     */
+    public Page<Member> applyPagination2Parallel(MemberSearchCondition condition, Pageable pageable){
+        // count 쿼리는 다른 스레드(EntityManager)에서 만들어지므로 팀 id는 미리 찾아둔다.
+        BooleanExpression teamNameEq = teamNameEq(condition.getTeamName());
+        return applyPaginationParallel(pageable, contentQuery -> contentQuery
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                usernameEq(condition.getUsername())
+                                , teamNameEq
+                                , ageGoe(condition.getAgeGoe())
+                                , ageLoe(condition.getAgeLoe())
+                        )
+                        , countQuery -> countQuery
+                        .select(member.id)
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                usernameEq(condition.getUsername())
+                                , teamNameEq
+                                , ageGoe(condition.getAgeGoe())
+                                , ageLoe(condition.getAgeLoe())
+                        )
+        );
+    }
+
+    /**
+     * 엔티티 스트리밍 조회
+     * 다음 row로 넘어갈 때 이전 엔티티는 영속성 컨텍스트에서 detach 되므로 1차 캐시가 커지지 않는다.
+     * 트랜잭션 안에서 소비하고 사용 후 close 해야 한다.
+     * @param condition
+     * @param fetchSize
+     * @return
+     */
+    public Stream<Member> streamMembers(MemberSearchCondition condition, int fetchSize){
+        return stream(selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                usernameEq(condition.getUsername())
+                                , teamNameEq(condition.getTeamName())
+                                , ageGoe(condition.getAgeGoe())
+                                , ageLoe(condition.getAgeLoe())
+                        )
+                , fetchSize);
+    }
+
+    /**
+     * 키셋 페이징
+     * 이름순으로 정렬하고, 이름이 같으면 id로 순서를 고정한다.
+     * offset을 사용하지 않으므로 뒤쪽 페이지도 첫 페이지와 같은 비용으로 가져온다.
+     * @param condition
+     * @param cursor 이전 페이지의 nextCursor, 첫 페이지는 null
+     * @param size
+     * @return
+     */
+    public KeysetSlice<Member> applyKeysetPagination(MemberSearchCondition condition, String cursor, int size){
+        return applyKeysetPagination(cursor, size, USERNAME_KEYSET, query -> query
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(
+                                usernameEq(condition.getUsername())
+                                , teamNameEq(condition.getTeamName())
+                                , ageGoe(condition.getAgeGoe())
+                                , ageLoe(condition.getAgeLoe())
+                        )
+        );
+    }
+
+    /**
+     * age살 미만 회원의 이름을 변경한다. (QuerydslBasicTest.bulkUpdate의 청크 버전)
+     * id 범위별로 나눠서 커밋하므로 큰 범위를 한번에 잠그지 않는다.
+     * 청크마다 새 트랜잭션을 사용하므로 조회 전용 트랜잭션을 시작하지 않는다.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public BulkProgress bulkRenameByAgeLt(int age, String username){
+        return executeBulkInChunks(member.id, member.age.lt(age),
+                chunk -> update(member).set(member.username, username).where(chunk));
+    }
+
+    /**
+     * age살 초과 회원 삭제 (QuerydslBasicTest.bulkDelete의 청크 버전)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public BulkProgress bulkDeleteByAgeGt(int age, long chunkSize, Duration pause){
+        return executeBulkInChunks(member.id, member.age.gt(age), chunkSize, pause,
+                chunk -> delete(member).where(chunk), progress -> { });
+    }
+
     private BooleanExpression usernameEq(String username) {
         return StringUtils.hasText(username) ? member.username.eq(username) : null;
     }
 
+    // 팀 이름은 TeamNameCache에서 id로 바꿔 member.team.id로 거른다. (team 조인이 조건에 필요 없다)
     private BooleanExpression teamNameEq(String teamName) {
-        return StringUtils.hasText(teamName) ? team.name.eq(teamName) : null;
+        return StringUtils.hasText(teamName) ? teamNameCache.teamNameEq(teamName) : null;
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
@@ -0,0 +1,116 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.Keyset;
+import study.querydsl.repository.support.KeysetPagination;
+import study.querydsl.repository.support.KeysetSlice;
+import study.querydsl.repository.support.Querydsl4RepositorySupport;
+
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 회원 조회. Team.members 컬렉션을 로딩하지 않고 member.team 조건으로 필요한 만큼만 조회한다.
+ * team.getMembers().size() 나 앞의 20명을 보려고 팀의 회원 전체를 읽어오는 대신 사용한다.
+ * 회원 목록은 엔티티가 아닌 MemberTeamDto로 조회하므로 영속성 컨텍스트에도 쌓이지 않는다.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class TeamMemberRepository extends Querydsl4RepositorySupport {
+
+    // 이름순 정렬, 이름이 같으면 member.id로 순서를 고정한다.
+    // username은 null일 수 있으므로 ''로 바꿔서 비교한다. (null 비교는 항상 거짓이라 키셋 페이지에서 빠진다.)
+    private static final Keyset<MemberTeamDto, String> USERNAME_KEYSET = Keyset.of(
+            Expressions.stringTemplate("coalesce({0}, '')", member.username), member.id, key -> key,
+            dto -> dto.getUsername() != null ? dto.getUsername() : "", MemberTeamDto::getMemberId);
+
+    public TeamMemberRepository(){
+        super(Member.class, true);
+    }
+
+    /**
+     * select count(member) ... where member.team_id = ?
+     */
+    public long countMembers(Long teamId){
+        Long count = select(member.count())
+                .from(member)
+                .where(teamIdEq(teamId))
+                .fetchOne();
+        return count != null ? count : 0;
+    }
+
+    /**
+     * 회원이 한명이라도 있는지. count 대신 첫 row만 확인한다.
+     */
+    public boolean hasMembers(Long teamId){
+        return selectOne()
+                .from(member)
+                .where(teamIdEq(teamId))
+                .fetchFirst() != null;
+    }
+
+    public boolean isMember(Long teamId, Long memberId){
+        return selectOne()
+                .from(member)
+                .where(teamIdEq(teamId), member.id.eq(memberId))
+                .fetchFirst() != null;
+    }
+
+    /**
+     * count 쿼리 없는 Slice 페이징. 스프링 데이터 Sort(username, age 등 Member 필드)도 적용된다.
+     */
+    public Slice<MemberTeamDto> findMembers(Long teamId, Pageable pageable){
+        return applySlicePagination(pageable, query -> membersOf(query, teamId));
+    }
+
+    /**
+     * 이름순 키셋 페이징
+     * @param cursor 이전 페이지의 nextCursor, 첫 페이지는 null
+     */
+    public KeysetSlice<MemberTeamDto> findMembers(Long teamId, String cursor, int size){
+        return applyKeysetPagination(cursor, size, USERNAME_KEYSET, query -> membersOf(query, teamId));
+    }
+
+    /**
+     * 팀 회원 전체를 이름순으로 흘려보낸다. 내부적으로 batchSize 단위의 키셋 페이지를 차례로 조회하므로
+     * 회원이 아무리 많아도 한번에 batchSize명만 메모리에 올라간다. 사용 후 close 한다.
+     */
+    public Stream<MemberTeamDto> streamMembers(Long teamId, int batchSize){
+        return KeysetPagination.stream(cursor -> findMembers(teamId, cursor, batchSize));
+    }
+
+    private JPAQuery<MemberTeamDto> membersOf(JPAQueryFactory query, Long teamId) {
+        return query
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId")
+                        , member.username
+                        , member.age
+                        , team.id.as("teamId")
+                        , team.name.as("teamName")
+                ))
+                .from(member)
+                .join(member.team, team)
+                .where(teamIdEq(teamId));
+    }
+
+    private JPAQuery<Integer> selectOne() {
+        return getQueryFactory().selectOne();
+    }
+
+    // member.team.id는 FK 컬럼이므로 team 조인이 필요없다.
+    private BooleanExpression teamIdEq(Long teamId) {
+        return member.team.id.eq(teamId);
+    }
+}
@@ -0,0 +1,78 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.support.CacheMetrics;
+import study.querydsl.repository.support.InvalidatableCache;
+import study.querydsl.repository.support.QueryCacheInvalidator;
+import study.querydsl.repository.support.TtlCache;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 이름 -> 팀 id 캐시.
+ *
+ * 검색 조건의 team.name = ? 을 캐시에서 찾은 id로 member.team.id = ? 로 바꾸면
+ *     조건 때문에 team을 조인할 필요가 없다. (count 쿼리는 CountQueries가 team 조인을 제거한다.)
+ *     member.team_id 인덱스로 바로 걸러진다.
+ * 팀 이름은 유일하지 않으므로 같은 이름의 팀이 여러개면 team.name = ? 조건을 그대로 사용한다.
+ * 키는 팀 이름, 값은 그 이름을 가진 팀 id 목록(없으면 빈 목록)이며, Member/Team이 변경되면 전부 비운다.
+ * 읽기/쓰기 트랜잭션이거나 현재 트랜잭션에서 Member/Team을 변경했으면 캐시를 거치지 않는다.
+ *     (flush 전에 바꾼 팀 이름도 반영되도록. QueryCacheInvalidator.shouldBypassCaches)
+ * 지표 : CacheMetrics 참고 (cache=team.name)
+ */
+@Component
+public class TeamNameCache implements InvalidatableCache {
+
+    private static final String CACHE_NAME = "team.name";
+
+    private final EntityManager em;
+    private final TtlCache<String, List<Long>> cache;
+
+    public TeamNameCache(EntityManager em, MeterRegistry meterRegistry,
+                         @Value("${querydsl.cache.team-name.ttl-seconds:300}") long ttlSeconds,
+                         @Value("${querydsl.cache.team-name.max-size:1000}") int maxSize) {
+        this.em = em;
+        this.cache = new TtlCache<>(ttlSeconds, TimeUnit.SECONDS, maxSize);
+
+        CacheMetrics.register(meterRegistry, CACHE_NAME, cache);
+    }
+
+    /**
+     * 이름이 teamName인 팀 id 목록. 캐시에 없을 때만 select t.id from Team t where t.name = ? 를 실행한다.
+     */
+    public List<Long> findIds(String teamName) {
+        if (QueryCacheInvalidator.shouldBypassCaches()) {
+            return load(teamName);
+        }
+        return cache.get(teamName, () -> load(teamName));
+    }
+
+    private List<Long> load(String teamName) {
+        return Collections.unmodifiableList(em
+                .createQuery("select t.id from Team t where t.name = :name", Long.class)
+                .setParameter("name", teamName)
+                .getResultList());
+    }
+
+    /**
+     * 팀이 하나면 member.team.id = ?, 없거나 여러개면 team.name = ? (team 조인 필요)
+     */
+    public BooleanExpression teamNameEq(String teamName) {
+        List<Long> ids = findIds(teamName);
+        return ids.size() == 1 ? member.team.id.eq(ids.get(0)) : team.name.eq(teamName);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,461 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.monitoring.MeteredJPAQuery;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.SingularAttribute;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 호출 위치(리포지토리 메서드)별로 학습하는 fetch 전략.
+ * Querydsl4RepositorySupport.selectFrom()과 페이징 메서드(applyPagination 등)의 selectFrom 컨텐츠 쿼리에 적용된다.
+ *
+ * QuerydslBasicTest.fetchJoinNo/fetchJoinUse 처럼 지연 로딩과 fetch join 중 무엇이 나은지는
+ * 조회한 엔티티의 연관관계(Member.team 등)를 호출한 쪽에서 실제로 사용하는지에 달려있다.
+ *   1. sampleRate 비율의 조회에서 결과 엔티티 앞쪽 sampleRows개를 약한 참조로 남겨둔다.
+ *   2. settle 시간이 지난 뒤(호출한 쪽에서 결과를 다 사용한 뒤) 다음 조회 때 각 단일 값 연관관계(ManyToOne, OneToOne)의
+ *      프록시가 초기화되었는지 확인한다. 초기화되어 있으면 호출한 쪽에서 사용한 것이다.
+ *   3. 샘플이 minSamples개 모일 때마다 그 구간의 사용 비율로 다시 결정한다.
+ *      joinThreshold 이상이면 그 호출 위치의 조회에 fetch join을 붙이고, 아래로 내려가면 다시 지연 로딩으로 돌아간다.
+ *      fetch join으로 조회하면 사용 여부를 알 수 없으므로 probeRate 비율의 조회는 fetch join 없이 실행해서 측정한다.
+ * fetch join은 쿼리를 JPQL로 만들 때 붙인다. 그 연관관계를 이미 조인했으면(ex. leftJoin(member.team, team)) 새로 조인하지 않고
+ * 그 조인에 fetch만 붙인다.
+ * 결정은 /actuator/fetchplans (FetchPlanEndpoint)로 확인하고, DELETE로 초기화할 수 있다.
+ *
+ * 한계
+     * 컬렉션 연관관계는 fetch join하면 row가 늘어나고 페이징이 깨지므로 대상이 아니다. (Team.members는 @BatchSize로 여러 팀을 한번에 로딩)
+     * 프록시가 아닌 값(이미 영속성 컨텍스트에 있던 엔티티)은 사용 여부를 알 수 없으므로 집계하지 않는다.
+     * 일괄 로딩이 다른 프록시까지 초기화하면 사용한 것으로 집계된다. (TeamBatchLoader는 엔티티만 올려두고 프록시는 초기화하지 않는다.)
+     * 결과를 받으려면 MeteredJPAQuery가 필요하다. (QueryMetrics가 없으면 학습하지 않는다.)
+ */
+@Slf4j
+@Component
+public class AdaptiveFetchPlans {
+
+    private static final int MAX_PENDING_SAMPLES = 100;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final boolean enabled;
+    private final double sampleRate;
+    private final double probeRate;
+    private final int minSamples;
+    private final double joinThreshold;
+    private final int sampleRows;
+    private final long settleNanos;
+    private final ConcurrentMap<PlanKey, CallSitePlan> plans = new ConcurrentHashMap<>();
+
+    public AdaptiveFetchPlans(EntityManagerFactory entityManagerFactory,
+                              @Value("${querydsl.fetch-plan.enabled:true}") boolean enabled,
+                              @Value("${querydsl.fetch-plan.sample-rate:0.1}") double sampleRate,
+                              @Value("${querydsl.fetch-plan.probe-rate:0.01}") double probeRate,
+                              @Value("${querydsl.fetch-plan.min-samples:20}") int minSamples,
+                              @Value("${querydsl.fetch-plan.join-threshold:0.5}") double joinThreshold,
+                              @Value("${querydsl.fetch-plan.sample-rows:20}") int sampleRows,
+                              @Value("${querydsl.fetch-plan.settle-millis:1000}") long settleMillis) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.probeRate = probeRate;
+        this.minSamples = minSamples;
+        this.joinThreshold = joinThreshold;
+        this.sampleRows = sampleRows;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+    }
+
+    /**
+     * 호출 위치에서 결정된 fetch join을 붙이고, 필요하면 결과를 샘플링하도록 등록한다.
+     * @param callSite 호출한 리포지토리 메서드 (ex. MemberTestRepository.basicSelectFrom)
+     */
+    public <T> JPAQuery<T> apply(String callSite, EntityPath<T> from, JPAQuery<T> query) {
+        if (!enabled || !(query instanceof MeteredJPAQuery)) {
+            return query;
+        }
+        MeteredJPAQuery<T> meteredQuery = (MeteredJPAQuery<T>) query;
+        CallSitePlan plan = plans.computeIfAbsent(new PlanKey(callSite, from.getType()), this::createPlan);
+        plan.executions.incrementAndGet();
+        plan.evaluate(System.nanoTime() - settleNanos);
+
+        // fetch join으로 결정된 연관관계도 가끔은 지연 로딩으로 실행해서 계속 사용하는지 다시 측정한다.
+        boolean probe = plan.hasFetchJoin() && chance(probeRate);
+        PathBuilder<T> root = new PathBuilder<>(from.getType(), from.getMetadata());
+        List<Path<?>> fetchJoins = new ArrayList<>();
+        List<Association> measured = new ArrayList<>();
+        for (Association association : plan.associations) {
+            if (association.fetchJoin && !probe) {
+                fetchJoins.add(root.get(association.name, association.type));
+            } else {
+                measured.add(association);
+            }
+        }
+        if (!fetchJoins.isEmpty()) {
+            // 호출한 쪽이 selectFrom() 뒤에 추가하는 조인까지 보고 붙인다.
+            meteredQuery.beforeSerialize(metadata -> withFetchJoins(metadata, fetchJoins));
+        }
+        if (!measured.isEmpty() && (probe || chance(sampleRate))) {
+            meteredQuery.onFetched(rows -> plan.sample(rows, measured));
+        }
+        return query;
+    }
+
+    public List<FetchPlanDecision> snapshot() {
+        List<FetchPlanDecision> decisions = new ArrayList<>();
+        plans.forEach((key, plan) -> {
+            plan.evaluate(System.nanoTime() - settleNanos);
+            decisions.add(new FetchPlanDecision(key, plan));
+        });
+        return decisions;
+    }
+
+    public void reset() {
+        plans.clear();
+    }
+
+    private static boolean chance(double rate) {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * associations를 fetch join한 메타데이터.
+     * 이미 조인한 연관관계는 그 조인에 fetch만 붙이고, 조인하지 않은 연관관계는 left join fetch를 추가한다.
+     */
+    private static QueryMetadata withFetchJoins(QueryMetadata source, List<Path<?>> associations) {
+        List<JoinExpression> joins = source.getJoins();
+        Set<Integer> fetchedJoins = new HashSet<>();
+        List<Path<?>> addedJoins = new ArrayList<>();
+        for (Path<?> association : associations) {
+            int index = indexOfJoin(joins, association);
+            if (index < 0) {
+                addedJoins.add(association);
+            } else if (!joins.get(index).getFlags().contains(JPAQueryMixin.FETCH)) {
+                fetchedJoins.add(index);
+            }
+        }
+        if (fetchedJoins.isEmpty() && addedJoins.isEmpty()) {
+            return source;
+        }
+
+        DefaultQueryMetadata metadata = new DefaultQueryMetadata();
+        metadata.setValidate(false);
+        for (int i = 0; i < joins.size(); i++) {
+            JoinExpression join = joins.get(i);
+            metadata.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                metadata.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                metadata.addJoinFlag(flag);
+            }
+            if (fetchedJoins.contains(i)) {
+                metadata.addJoinFlag(JPAQueryMixin.FETCH);
+            }
+        }
+        for (Path<?> association : addedJoins) {
+            metadata.addJoin(JoinType.LEFTJOIN, association);
+            metadata.addJoinFlag(JPAQueryMixin.FETCH);
+        }
+        metadata.setDistinct(source.isDistinct());
+        metadata.setProjection(source.getProjection());
+        if (source.getWhere() != null) {
+            metadata.addWhere(source.getWhere());
+        }
+        for (Expression<?> groupBy : source.getGroupBy()) {
+            metadata.addGroupBy(groupBy);
+        }
+        if (source.getHaving() != null) {
+            metadata.addHaving(source.getHaving());
+        }
+        for (OrderSpecifier<?> orderBy : source.getOrderBy()) {
+            metadata.addOrderBy(orderBy);
+        }
+        metadata.setModifiers(source.getModifiers());
+        metadata.setUnique(source.isUnique());
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            setParam(metadata, param.getKey(), param.getValue());
+        }
+        for (QueryFlag flag : source.getFlags()) {
+            metadata.addFlag(flag);
+        }
+        return metadata;
+    }
+
+    // 연관관계 자체를 조인했거나 (join(member.team)) 별칭을 주어 조인한 경우 (join(member.team, team))
+    private static int indexOfJoin(List<JoinExpression> joins, Path<?> association) {
+        for (int i = 0; i < joins.size(); i++) {
+            Expression<?> target = joins.get(i).getTarget();
+            if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+                target = ((Operation<?>) target).getArg(0);
+            }
+            if (target instanceof Path && ((Path<?>) target).getMetadata().equals(association.getMetadata())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void setParam(QueryMetadata metadata, ParamExpression<T> param, Object value) {
+        metadata.setParam(param, (T) value);
+    }
+
+    private CallSitePlan createPlan(PlanKey key) {
+        List<Association> associations = new ArrayList<>();
+        for (SingularAttribute<?, ?> attribute : entityManagerFactory.getMetamodel().entity(key.entityType)
+                .getSingularAttributes()) {
+            Attribute.PersistentAttributeType type = attribute.getPersistentAttributeType();
+            if (type == Attribute.PersistentAttributeType.MANY_TO_ONE
+                    || type == Attribute.PersistentAttributeType.ONE_TO_ONE) {
+                associations.add(new Association(attribute));
+            }
+        }
+        return new CallSitePlan(key, associations);
+    }
+
+    private class CallSitePlan {
+        private final PlanKey key;
+        private final List<Association> associations;
+        private final AtomicLong executions = new AtomicLong();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private final Queue<Sample> pending = new ConcurrentLinkedQueue<>();
+
+        CallSitePlan(PlanKey key, List<Association> associations) {
+            this.key = key;
+            this.associations = associations;
+        }
+
+        void sample(List<?> rows, List<Association> targets) {
+            if (rows.isEmpty() || pendingCount.get() >= MAX_PENDING_SAMPLES) {
+                return;
+            }
+            List<WeakReference<Object>> entities = new ArrayList<>();
+            for (int i = 0; i < Math.min(rows.size(), sampleRows); i++) {
+                entities.add(new WeakReference<>(rows.get(i)));
+            }
+            pending.add(new Sample(System.nanoTime(), entities, targets));
+            pendingCount.incrementAndGet();
+        }
+
+        boolean hasFetchJoin() {
+            for (Association association : associations) {
+                if (association.fetchJoin) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * settledBefore 이전에 남긴 샘플의 연관관계 초기화 여부를 집계하고 fetch join 여부를 결정한다.
+         */
+        void evaluate(long settledBefore) {
+            Sample sample;
+            while ((sample = pending.peek()) != null && sample.capturedAt - settledBefore <= 0) {
+                if (!pending.remove(sample)) {
+                    continue;   // 다른 스레드가 먼저 가져갔다.
+                }
+                pendingCount.decrementAndGet();
+                for (Association association : sample.targets) {
+                    association.record(sample.entities);
+                }
+            }
+            for (Association association : associations) {
+                if (association.decide(minSamples, joinThreshold)) {
+                    log.info("fetch plan : {} {} -> {} {} (touch ratio {})", key.callSite,
+                            key.entityType.getSimpleName(), association.fetchJoin ? "left join fetch" : "lazy",
+                            association.name, association.lastTouchRatio);
+                }
+            }
+        }
+    }
+
+    private static class Sample {
+        private final long capturedAt;
+        private final List<WeakReference<Object>> entities;
+        private final List<Association> targets;
+
+        Sample(long capturedAt, List<WeakReference<Object>> entities, List<Association> targets) {
+            this.capturedAt = capturedAt;
+            this.entities = entities;
+            this.targets = targets;
+        }
+    }
+
+    private static class Association {
+        private final String name;
+        private final Class<Object> type;
+        private final Member javaMember;
+        private final AtomicLong samples = new AtomicLong();
+        private final AtomicLong checked = new AtomicLong();
+        private final AtomicLong touched = new AtomicLong();
+        private volatile boolean fetchJoin;
+        private volatile LocalDateTime decidedAt;
+        private volatile Double lastTouchRatio;     // 마지막으로 결정한 구간의 사용 비율
+
+        @SuppressWarnings("unchecked")
+        Association(SingularAttribute<?, ?> attribute) {
+            this.name = attribute.getName();
+            this.type = (Class<Object>) attribute.getJavaType();
+            this.javaMember = attribute.getJavaMember();
+            if (javaMember instanceof Field) {
+                ((Field) javaMember).setAccessible(true);
+            }
+        }
+
+        void record(List<WeakReference<Object>> entities) {
+            long entityCount = 0;
+            for (WeakReference<Object> reference : entities) {
+                Object entity = reference.get();
+                Object value = entity != null ? valueOf(entity) : null;
+                // 연관관계가 없거나 프록시가 아니면(이미 로딩된 엔티티) 판단할 수 없다.
+                if (value instanceof HibernateProxy) {
+                    entityCount++;
+                    if (!((HibernateProxy) value).getHibernateLazyInitializer().isUninitialized()) {
+                        touched.incrementAndGet();
+                    }
+                }
+            }
+            if (entityCount > 0) {
+                checked.addAndGet(entityCount);
+                samples.incrementAndGet();
+            }
+        }
+
+        /**
+         * 이번 구간에 샘플이 minSamples개 모였으면 사용 비율로 다시 결정하고 다음 구간을 시작한다.
+         * 예전 구간은 반영하지 않으므로 호출한 쪽의 사용 방식이 바뀌면 결정도 따라 바뀐다.
+         * @return 결정이 바뀌었으면 true
+         */
+        synchronized boolean decide(int minSamples, double joinThreshold) {
+            if (samples.get() < minSamples) {
+                return false;
+            }
+            double ratio = touchRatio();
+            samples.set(0);
+            checked.set(0);
+            touched.set(0);
+            lastTouchRatio = ratio;
+            boolean join = ratio >= joinThreshold;
+            if (join == fetchJoin) {
+                return false;
+            }
+            fetchJoin = join;
+            decidedAt = LocalDateTime.now();
+            return true;
+        }
+
+        double touchRatio() {
+            long total = checked.get();
+            return total == 0 ? 0 : (double) touched.get() / total;
+        }
+
+        private Object valueOf(Object entity) {
+            try {
+                if (javaMember instanceof Field) {
+                    return ((Field) javaMember).get(entity);
+                }
+                return ((Method) javaMember).invoke(entity);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot read association " + name, e);
+            }
+        }
+    }
+
+    @EqualsAndHashCode
+    private static class PlanKey {
+        private final String callSite;
+        private final Class<?> entityType;
+
+        PlanKey(String callSite, Class<?> entityType) {
+            this.callSite = callSite;
+            this.entityType = entityType;
+        }
+    }
+
+    /**
+     * 엔드포인트 응답용 결정 내역
+     */
+    @Getter
+    public static class FetchPlanDecision {
+        private final String callSite;
+        private final String entity;
+        private final long executions;
+        private final List<AssociationDecision> associations;
+
+        FetchPlanDecision(PlanKey key, CallSitePlan plan) {
+            this.callSite = key.callSite;
+            this.entity = key.entityType.getSimpleName();
+            this.executions = plan.executions.get();
+            List<AssociationDecision> decisions = new ArrayList<>();
+            for (Association association : plan.associations) {
+                decisions.add(new AssociationDecision(association));
+            }
+            this.associations = Collections.unmodifiableList(decisions);
+        }
+    }
+
+    /**
+     * samples, checked, touched, touchRatio는 아직 결정에 반영하지 않은 현재 구간의 값이다.
+     */
+    @Getter
+    public static class AssociationDecision {
+        private final String name;
+        private final long samples;
+        private final long checked;
+        private final long touched;
+        private final double touchRatio;
+        private final Double lastTouchRatio;
+        private final String plan;
+        private final LocalDateTime decidedAt;
+
+        AssociationDecision(Association association) {
+            this.name = association.name;
+            this.samples = association.samples.get();
+            this.checked = association.checked.get();
+            this.touched = association.touched.get();
+            this.touchRatio = association.touchRatio();
+            this.lastTouchRatio = association.lastTouchRatio;
+            this.plan = association.fetchJoin ? "FETCH_JOIN" : "LAZY";
+            this.decidedAt = association.decidedAt;
+        }
+    }
+}
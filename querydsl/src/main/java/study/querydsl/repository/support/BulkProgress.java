@@ -0,0 +1,39 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 청크 단위 벌크 연산의 진행 상황.
+ * 청크 하나가 커밋될 때마다 새로 만들어져서 진행 상황 리스너에 전달되고, 마지막 값이 결과로 반환된다.
+ */
+@Getter
+public class BulkProgress {
+
+    private final long totalChunks;
+    private final long completedChunks;
+    private final long affectedRows;
+    private final long elapsedNanos;
+
+    BulkProgress(long totalChunks, long completedChunks, long affectedRows, long elapsedNanos) {
+        this.totalChunks = totalChunks;
+        this.completedChunks = completedChunks;
+        this.affectedRows = affectedRows;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public boolean isCompleted() {
+        return completedChunks == totalChunks;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : affectedRows * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("chunk %d/%d, %d rows, %d ms, %.0f rows/s", completedChunks, totalChunks,
+                affectedRows, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,36 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * TtlCache 지표를 Micrometer에 등록한다. (Micrometer 기본 캐시 지표와 같은 이름 사용)
+ * cache.gets{result=hit|miss}, cache.evictions, cache.size, cache.weight, cache.hit.ratio
+ */
+public final class CacheMetrics {
+
+    private CacheMetrics() {
+    }
+
+    public static void register(MeterRegistry meterRegistry, String cacheName, TtlCache<?, ?> cache) {
+        FunctionCounter.builder("cache.gets", cache, TtlCache::hitCount)
+                .tags("cache", cacheName, "result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", cache, TtlCache::missCount)
+                .tags("cache", cacheName, "result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", cache, TtlCache::evictionCount)
+                .tags("cache", cacheName)
+                .register(meterRegistry);
+        Gauge.builder("cache.size", cache, TtlCache::size)
+                .tags("cache", cacheName)
+                .register(meterRegistry);
+        Gauge.builder("cache.weight", cache, TtlCache::weight)
+                .tags("cache", cacheName)
+                .register(meterRegistry);
+        Gauge.builder("cache.hit.ratio", cache, TtlCache::hitRatio)
+                .tags("cache", cacheName)
+                .register(meterRegistry);
+    }
+}
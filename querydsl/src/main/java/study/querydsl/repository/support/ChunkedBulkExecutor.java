@@ -0,0 +1,168 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.dml.DMLClause;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 벌크 update, delete를 id 범위(청크)로 나눠서 청크마다 별도 트랜잭션(REQUIRES_NEW)으로 실행한다.
+ * 한 문장으로 큰 범위를 잠그지 않으므로 실행 중에도 다른 요청이 멈추지 않는다.
+ *
+ * 1. 조건에 맞는 id의 최소/최대를 구해서 chunkSize 간격의 범위로 나눈다.
+ * 2. 청크마다 (id between lo and hi) and 조건 으로 실행하고 커밋한다.
+ * 3. 호출한 쪽 영속성 컨텍스트에서 해당 범위의 엔티티를 detach하고, 조회 캐시를 비운다.
+ * 4. 진행 상황(rows/s)을 리스너에 알리고 pause만큼 쉰 뒤 다음 청크를 실행한다.
+ *
+ * 주의
+     * 전체가 하나의 트랜잭션이 아니다. 중간에 실패하면 이미 커밋된 청크는 그대로 남으므로 다시 실행해도 되는 연산이어야 한다.
+     * 호출한 트랜잭션이 대상 row를 이미 변경(flush)했다면 청크 트랜잭션이 그 락을 기다리게 되므로 트랜잭션 밖에서 호출하는 것이 좋다.
+     * detach된 엔티티에 flush되지 않은 변경이 있었다면 그 변경은 버려진다.
+ */
+@Slf4j
+@Component
+public class ChunkedBulkExecutor {
+
+    private final EntityManager em;
+    private final TransactionTemplate chunkTransaction;
+    private final QueryCacheInvalidator cacheInvalidator;
+    private final long defaultChunkSize;
+    private final Duration defaultPause;
+
+    public ChunkedBulkExecutor(EntityManager em, PlatformTransactionManager transactionManager,
+                               QueryCacheInvalidator cacheInvalidator,
+                               @Value("${querydsl.bulk.chunk-size:1000}") long defaultChunkSize,
+                               @Value("${querydsl.bulk.pause-millis:100}") long defaultPauseMillis) {
+        this.em = em;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.cacheInvalidator = cacheInvalidator;
+        this.defaultChunkSize = defaultChunkSize;
+        this.defaultPause = Duration.ofMillis(defaultPauseMillis);
+    }
+
+    public long getDefaultChunkSize() {
+        return defaultChunkSize;
+    }
+
+    public Duration getDefaultPause() {
+        return defaultPause;
+    }
+
+    /**
+     * @param id        청크를 나눌 기준 id
+     * @param condition 대상 조건 (null이면 전체)
+     * @param chunkSize 청크 하나의 id 범위 크기
+     * @param pause     청크 사이에 쉬는 시간
+     * @param clause    청크 조건을 받아 update/delete 문을 만드는 함수 (조건을 반드시 where에 넣어야 한다.)
+     * @param listener  청크가 커밋될 때마다 호출된다.
+     * @return 마지막 진행 상황. 중간에 인터럽트되면 완료되지 않은 진행 상황을 반환한다.
+     */
+    public BulkProgress execute(NumberPath<Long> id, Predicate condition, long chunkSize, Duration pause,
+                                Function<Predicate, DMLClause<?>> clause, Consumer<BulkProgress> listener) {
+        Assert.isTrue(chunkSize > 0, "Chunk size must be greater than zero!");
+        Assert.isTrue(!pause.isNegative(), "Pause must not be negative!");
+
+        Session callerSession = TransactionSynchronizationManager.isActualTransactionActive()
+                ? em.unwrap(Session.class) : null;
+        Class<?> entityType = id.getRoot().getType();
+
+        NumberExpression<Long> minId = id.min();
+        NumberExpression<Long> maxId = id.max();
+        Tuple range = chunkTransaction.execute(status -> new JPAQueryFactory(em)
+                .select(minId, maxId)
+                .from((EntityPath<?>) id.getRoot())
+                .where(condition)
+                .fetchOne());
+        if (range == null || range.get(minId) == null) {
+            return new BulkProgress(0, 0, 0, 0);
+        }
+        long min = range.get(minId);
+        long max = range.get(maxId);
+
+        long totalChunks = (max - min) / chunkSize + 1;
+        long start = System.nanoTime();
+        BulkProgress progress = new BulkProgress(totalChunks, 0, 0, 0);
+        for (long chunk = 0; chunk < totalChunks; chunk++) {
+            long lo = min + chunk * chunkSize;
+            long hi = Math.min(lo + chunkSize - 1, max);
+            Predicate chunkCondition = ExpressionUtils.allOf(id.between(lo, hi), condition);
+
+            Long affected = chunkTransaction.execute(status -> clause.apply(chunkCondition).execute());
+            detach(callerSession, entityType, lo, hi);
+            cacheInvalidator.invalidateAll();
+
+            progress = new BulkProgress(totalChunks, chunk + 1, progress.getAffectedRows() + affected,
+                    System.nanoTime() - start);
+            listener.accept(progress);
+
+            if (chunk + 1 < totalChunks && !sleep(pause)) {
+                log.warn("bulk {} interrupted at {}", entityType.getSimpleName(), progress);
+                break;
+            }
+        }
+        return progress;
+    }
+
+    public void logProgress(String name, BulkProgress progress) {
+        log.info("bulk {} : {}", name, progress);
+    }
+
+    /**
+     * 청크 트랜잭션에서 변경된 row를 호출한 쪽 영속성 컨텍스트가 옛날 값으로 들고 있지 않도록 detach 한다.
+     */
+    private void detach(Session callerSession, Class<?> entityType, long lo, long hi) {
+        if (callerSession == null || !callerSession.isOpen()) {
+            return;
+        }
+        List<Object> stale = new ArrayList<>();
+        for (Map.Entry<Object, EntityEntry> entry :
+                ((SessionImplementor) callerSession).getPersistenceContext().reentrantSafeEntityEntries()) {
+            EntityEntry entityEntry = entry.getValue();
+            if (entityType.isAssignableFrom(entityEntry.getPersister().getMappedClass())
+                    && entityEntry.getId() instanceof Long) {
+                long entityId = (Long) entityEntry.getId();
+                if (entityId >= lo && entityId <= hi) {
+                    stale.add(entry.getKey());
+                }
+            }
+        }
+        stale.forEach(callerSession::detach);
+    }
+
+    private boolean sleep(Duration pause) {
+        if (pause.isZero()) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
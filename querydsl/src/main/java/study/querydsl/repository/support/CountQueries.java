@@ -0,0 +1,234 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinFlag;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.MapExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.jpa.JPAQueryMixin;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import study.querydsl.monitoring.MeteredJPAQuery;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 컨텐츠 쿼리로부터 가벼운 count 쿼리를 만들어준다.
+ *
+ * 컨텐츠 쿼리를 그대로 count에 사용하면 필요없는 조인과 정렬까지 같이 실행된다.
+ * 다음을 제거한 count 쿼리를 만든다.
+     * order by, offset, limit
+     * fetch join (count 쿼리에서는 오히려 오류가 난다)
+     * 조건(where, group by, having, 다른 조인의 on)에서 참조하지 않는 left join
+     * 별칭 없이 연관관계를 left join한 경우 (조건에서 참조할 수 없다.)
+ *
+ * left join 이라도 컬렉션(@OneToMany 등) 조인은 row 수를 바꾸기 때문에 제거하지 않는다.
+ * ManyToOne, OneToOne 처럼 단일 값 연관관계에 별칭을 주어 left join한 경우만 제거 대상이다.
+ * (ex. leftJoin(member.team, team) 에서 team을 조건에 쓰지 않으면 제거)
+ */
+public final class CountQueries {
+
+    private CountQueries() {
+    }
+
+    public static JPAQuery<?> derive(EntityManager em, JPAQuery<?> contentQuery) {
+        DefaultQueryMetadata metadata = new DefaultQueryMetadata();
+        metadata.setValidate(false);
+        copyCountMetadata(contentQuery.getMetadata(), metadata);
+        if (contentQuery instanceof MeteredJPAQuery) {
+            // 컨텐츠 쿼리와 같은 지표로 count도 기록한다.
+            return ((MeteredJPAQuery<?>) contentQuery).withMetadata(metadata);
+        }
+        return new JPAQuery<Void>(em, metadata);
+    }
+
+    /**
+     * queryFactory로 count 쿼리를 만든다. (factory의 EntityManager, 지표, 힌트를 그대로 사용)
+     * 다른 EntityManager로 count 하는 경우에 사용한다. (ex. ParallelCountExecutor의 count 스레드)
+     */
+    public static JPAQuery<?> derive(JPAQueryFactory queryFactory, JPAQuery<?> contentQuery) {
+        JPAQuery<?> countQuery = queryFactory.query();
+        copyCountMetadata(contentQuery.getMetadata(), countQuery.getMetadata());
+        return countQuery;
+    }
+
+    private static void copyCountMetadata(QueryMetadata source, QueryMetadata metadata) {
+        Set<Path<?>> referenced = new HashSet<>();
+        collectRoots(source.getWhere(), referenced);
+        collectRoots(source.getHaving(), referenced);
+        for (Expression<?> groupBy : source.getGroupBy()) {
+            collectRoots(groupBy, referenced);
+        }
+        if (source.isDistinct()) {
+            // count(distinct ...)는 projection 대상에 따라 결과가 달라지므로 projection이 쓰는 조인도 남긴다.
+            collectRoots(source.getProjection(), referenced);
+        }
+
+        // 뒤의 조인이 앞의 조인 별칭을 사용할 수 있으므로 뒤에서부터 판단한다.
+        List<JoinExpression> joins = source.getJoins();
+        List<JoinExpression> kept = new ArrayList<>();
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            if (i > 0 && isRemovable(join, referenced)) {
+                continue;
+            }
+            kept.add(join);
+            collectRoots(join.getTarget(), referenced);
+            collectRoots(join.getCondition(), referenced);
+        }
+        Collections.reverse(kept);
+
+        for (JoinExpression join : kept) {
+            metadata.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                metadata.addJoinCondition(join.getCondition());
+            }
+            for (JoinFlag flag : join.getFlags()) {
+                if (!flag.equals(JPAQueryMixin.FETCH) && !flag.equals(JPAQueryMixin.FETCH_ALL_PROPERTIES)) {
+                    metadata.addJoinFlag(flag);
+                }
+            }
+        }
+        if (source.getWhere() != null) {
+            metadata.addWhere(source.getWhere());
+        }
+        for (Expression<?> groupBy : source.getGroupBy()) {
+            metadata.addGroupBy(groupBy);
+        }
+        if (source.getHaving() != null) {
+            metadata.addHaving(source.getHaving());
+        }
+        if (source.isDistinct()) {
+            metadata.setDistinct(true);
+            metadata.setProjection(source.getProjection());
+        }
+        // 조건에 Param을 사용했으면 값도 옮겨야 한다. (hint 등 쿼리 플래그도 그대로)
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            setParam(metadata, param.getKey(), param.getValue());
+        }
+        for (QueryFlag flag : source.getFlags()) {
+            metadata.addFlag(flag);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void setParam(QueryMetadata metadata, ParamExpression<T> param, Object value) {
+        metadata.setParam(param, (T) value);
+    }
+
+    private static boolean isRemovable(JoinExpression join, Set<Path<?>> referenced) {
+        if (join.getType() != JoinType.LEFTJOIN) {
+            return false;   // inner join은 row를 걸러낼 수 있다.
+        }
+        if (join.getTarget() instanceof Path && ((Path<?>) join.getTarget()).getMetadata().getParent() != null) {
+            // 별칭 없는 연관관계 left join (ex. AdaptiveFetchPlans의 leftJoin(member.team).fetchJoin())
+            // 별칭이 없으니 조건에서 참조할 수 없다. 컬렉션만 남긴다.
+            return !(join.getTarget() instanceof CollectionExpression || join.getTarget() instanceof MapExpression);
+        }
+        if (!(join.getTarget() instanceof Operation)) {
+            return false;
+        }
+        Operation<?> target = (Operation<?>) join.getTarget();
+        if (target.getOperator() != Ops.ALIAS) {
+            return false;
+        }
+        Expression<?> association = target.getArg(0);
+        if (association instanceof CollectionExpression || association instanceof MapExpression) {
+            return false;   // 컬렉션 조인은 row 수를 늘린다.
+        }
+        Path<?> alias = (Path<?>) target.getArg(1);
+        return !referenced.contains(alias.getRoot());
+    }
+
+    private static void collectRoots(Expression<?> expr, Set<Path<?>> roots) {
+        if (expr != null) {
+            expr.accept(RootCollector.INSTANCE, roots);
+        }
+    }
+
+    /**
+     * 식에서 사용하는 경로의 루트(별칭)를 모은다.
+     */
+    private static final class RootCollector implements Visitor<Void, Set<Path<?>>> {
+
+        private static final RootCollector INSTANCE = new RootCollector();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Path<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Path<?>> roots) {
+            for (Expression<?> arg : expr.getArgs()) {
+                collectRoots(arg, roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Path<?>> roots) {
+            for (Expression<?> arg : expr.getArgs()) {
+                collectRoots(arg, roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Path<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Path<?>> roots) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Path<?>> roots) {
+            // 상관 서브쿼리가 바깥 별칭을 사용할 수 있으므로 서브쿼리 안쪽도 모두 확인한다.
+            QueryMetadata metadata = expr.getMetadata();
+            for (JoinExpression join : metadata.getJoins()) {
+                collectRoots(join.getTarget(), roots);
+                collectRoots(join.getCondition(), roots);
+            }
+            collectRoots(metadata.getWhere(), roots);
+            collectRoots(metadata.getHaving(), roots);
+            collectRoots(metadata.getProjection(), roots);
+            for (Expression<?> groupBy : metadata.getGroupBy()) {
+                collectRoots(groupBy, roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Path<?>> roots) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression) {
+                    collectRoots((Expression<?>) arg, roots);
+                }
+            }
+            return null;
+        }
+    }
+}
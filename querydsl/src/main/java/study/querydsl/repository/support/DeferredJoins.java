@@ -0,0 +1,112 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * deferred join(late row lookup) 페이징 보조 기능.
+ *
+ * offset이 큰 페이지에서 전체 projection(조인 포함)을 만들어놓고 앞쪽 row를 버리는 대신,
+ * 1. 조건과 정렬에 필요한 최소한으로 id만 페이징해서 가져오고 (좁은 인덱스만으로 처리 가능)
+ * 2. 그 id들에 대해서만 where id in (...) 으로 projection을 만든다.
+ * in 절은 순서를 보장하지 않으므로 1번의 id 순서대로 다시 정렬한다.
+ * 1번의 id 쿼리는 조인을 그대로 유지하고, 정렬은 조인 별칭을 사용하게 바꾼다. (left join한 row가 정렬 때문에 빠지지 않도록)
+ */
+public final class DeferredJoins {
+
+    private DeferredJoins() {
+    }
+
+    /**
+     * 정렬 조건이 같은 row들의 순서가 매번 달라지지 않도록 마지막에 id 정렬을 추가한다.
+     * 이미 id 정렬이 있으면 그대로 둔다.
+     */
+    public static Sort withIdTieBreaker(Sort sort, Path<?> id) {
+        String idProperty = id.getMetadata().getName();
+        if (sort.getOrderFor(idProperty) != null) {
+            return sort;
+        }
+        return sort.and(Sort.by(Sort.Order.asc(idProperty)));
+    }
+
+    /**
+     * ids 순서대로 content를 정렬한다.
+     */
+    public static <T> List<T> orderByIds(List<Long> ids, List<T> content, Function<T, Long> idExtractor) {
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            positions.put(ids.get(i), i);
+        }
+        List<T> ordered = new ArrayList<>(content);
+        ordered.sort((a, b) -> Integer.compare(
+                positions.getOrDefault(idExtractor.apply(a), Integer.MAX_VALUE),
+                positions.getOrDefault(idExtractor.apply(b), Integer.MAX_VALUE)));
+        return Collections.unmodifiableList(ordered);
+    }
+
+    /**
+     * 별칭으로 조인한 연관관계를 지나가는 정렬 경로를 별칭 경로로 바꾼다.
+     * 스프링 데이터 Sort("team.name")는 member.team.name 이 되는데, 이 경로는 JPQL에서 암묵적 inner join이 되어
+     * left join으로 남겨둔 row(ex. 팀이 없는 회원)가 빠진다. team.name 으로 바꾸면 이미 있는 조인을 그대로 사용한다.
+     */
+    public static List<OrderSpecifier<?>> useJoinAliases(List<OrderSpecifier<?>> orders, List<JoinExpression> joins) {
+        Map<PathMetadata, Path<?>> aliases = new HashMap<>();
+        for (JoinExpression join : joins) {
+            if (!(join.getTarget() instanceof Operation)) {
+                continue;
+            }
+            Operation<?> target = (Operation<?>) join.getTarget();
+            if (target.getOperator() == Ops.ALIAS && target.getArg(0) instanceof Path) {
+                aliases.put(((Path<?>) target.getArg(0)).getMetadata(), (Path<?>) target.getArg(1));
+            }
+        }
+        List<OrderSpecifier<?>> aliased = new ArrayList<>(orders.size());
+        for (OrderSpecifier<?> order : orders) {
+            aliased.add(useJoinAlias(order, aliases));
+        }
+        return aliased;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static OrderSpecifier<?> useJoinAlias(OrderSpecifier<?> order, Map<PathMetadata, Path<?>> aliases) {
+        if (aliases.isEmpty() || !(order.getTarget() instanceof Path)) {
+            return order;
+        }
+        Path<?> target = (Path<?>) order.getTarget();
+        Path<?> aliased = useJoinAlias(target, aliases);
+        if (aliased == target) {
+            return order;
+        }
+        return new OrderSpecifier(order.getOrder(), (Expression) aliased, order.getNullHandling());
+    }
+
+    private static Path<?> useJoinAlias(Path<?> path, Map<PathMetadata, Path<?>> aliases) {
+        Path<?> alias = aliases.get(path.getMetadata());
+        if (alias != null) {
+            return alias;
+        }
+        Path<?> parent = path.getMetadata().getParent();
+        if (parent == null) {
+            return path;
+        }
+        Path<?> aliasedParent = useJoinAlias(parent, aliases);
+        if (aliasedParent == parent) {
+            return path;
+        }
+        return ExpressionUtils.path(path.getType(), aliasedParent, path.getMetadata().getName());
+    }
+}
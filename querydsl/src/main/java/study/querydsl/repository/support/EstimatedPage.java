@@ -0,0 +1,76 @@
+package study.querydsl.repository.support;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * total이 정확한 count가 아니라 통계 정보로 추정한 값일 수 있는 페이지.
+ * estimated가 true면 totalElements, totalPages는 근사값이다.
+ */
+public class EstimatedPage<T> extends PageImpl<T> {
+
+    private final boolean estimated;
+
+    public EstimatedPage(List<T> content, Pageable pageable, long total, boolean estimated) {
+        super(content, pageable, total);
+        this.estimated = estimated;
+    }
+
+    /**
+     * PageableExecutionUtils.getPage와 같이 count가 필요없는 경우(첫 페이지가 덜 찼거나 마지막 페이지)에는
+     * total을 직접 계산하고(정확한 값), 필요할 때만 total을 구한다.
+     */
+    public static <T> EstimatedPage<T> of(List<T> content, Pageable pageable, Supplier<Total> total) {
+        if (pageable.isUnpaged() || pageable.getOffset() == 0) {
+            if (pageable.isUnpaged() || pageable.getPageSize() > content.size()) {
+                return new EstimatedPage<>(content, pageable, content.size(), false);
+            }
+            return of(content, pageable, total.get());
+        }
+        if (!content.isEmpty() && pageable.getPageSize() > content.size()) {
+            return new EstimatedPage<>(content, pageable, pageable.getOffset() + content.size(), false);
+        }
+        return of(content, pageable, total.get());
+    }
+
+    private static <T> EstimatedPage<T> of(List<T> content, Pageable pageable, Total total) {
+        return new EstimatedPage<>(content, pageable, total.getValue(), total.isEstimated());
+    }
+
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    /**
+     * 정확한 count 또는 추정치
+     */
+    public static final class Total {
+
+        private final long value;
+        private final boolean estimated;
+
+        private Total(long value, boolean estimated) {
+            this.value = value;
+            this.estimated = estimated;
+        }
+
+        public static Total exact(long value) {
+            return new Total(value, false);
+        }
+
+        public static Total estimated(long value) {
+            return new Total(value, true);
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        public boolean isEstimated() {
+            return estimated;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package study.querydsl.repository.support;
+
+/**
+ * 엔티티가 변경되면 비워야 하는 조회 캐시.
+ * 빈으로 등록해두면 QueryCacheInvalidationListener가 Member, Team 변경 시 invalidateAll()을 호출한다.
+ */
+public interface InvalidatableCache {
+
+    void invalidateAll();
+}
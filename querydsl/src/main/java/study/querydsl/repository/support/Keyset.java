@@ -0,0 +1,76 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberPath;
+
+import java.util.function.Function;
+
+/**
+ * 키셋 페이징의 정렬 기준 정의.
+ * (정렬 키, id) 순서로 오름차순 정렬하며, id는 정렬 키가 같은 row들 사이의 순서를 고정해주는 역할을 한다.
+ * 정렬 키는 null이 될 수 없는 컬럼이어야 한다. (null이 될 수 있으면 coalesce 식을 사용한다. TeamMemberRepository 참고)
+ *
+ * @param <T> 조회 결과 타입
+ * @param <K> 정렬 키 타입
+ */
+public class Keyset<T, K extends Comparable<? super K>> {
+
+    private final Expression<K> sortKey;
+    private final NumberPath<Long> id;
+    private final Function<String, K> keyParser;
+    private final Function<T, K> keyExtractor;
+    private final Function<T, Long> idExtractor;
+
+    private Keyset(Expression<K> sortKey, NumberPath<Long> id, Function<String, K> keyParser,
+                   Function<T, K> keyExtractor, Function<T, Long> idExtractor) {
+        this.sortKey = sortKey;
+        this.id = id;
+        this.keyParser = keyParser;
+        this.keyExtractor = keyExtractor;
+        this.idExtractor = idExtractor;
+    }
+
+    /**
+     * @param sortKey      정렬 키 (ex. member.age)
+     * @param id           순서 보장용 id (ex. member.id)
+     * @param keyParser    커서 문자열을 정렬 키 타입으로 되돌리는 함수
+     * @param keyExtractor 조회 결과에서 정렬 키를 꺼내는 함수
+     * @param idExtractor  조회 결과에서 id를 꺼내는 함수
+     */
+    public static <T, K extends Comparable<? super K>> Keyset<T, K> of(Expression<K> sortKey, NumberPath<Long> id,
+                                                                       Function<String, K> keyParser,
+                                                                       Function<T, K> keyExtractor,
+                                                                       Function<T, Long> idExtractor) {
+        return new Keyset<>(sortKey, id, keyParser, keyExtractor, idExtractor);
+    }
+
+    /**
+     * where (sortKey, id) > (cursor.key, cursor.id)
+     * JPQL은 row value 비교를 지원하지 않으니 풀어서 작성한다.
+     */
+    public Predicate after(KeysetCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        K key = keyParser.apply(cursor.getKey());
+        return Expressions.predicate(Ops.GT, sortKey, Expressions.constant(key))
+                .or(Expressions.predicate(Ops.EQ, sortKey, Expressions.constant(key))
+                        .and(id.gt(cursor.getId())));
+    }
+
+    public OrderSpecifier<?>[] orderBy() {
+        return new OrderSpecifier<?>[]{
+                new OrderSpecifier<>(Order.ASC, sortKey),
+                id.asc()
+        };
+    }
+
+    public KeysetCursor cursorOf(T last) {
+        return KeysetCursor.of(keyExtractor.apply(last), idExtractor.apply(last));
+    }
+}
@@ -0,0 +1,63 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 키셋(seek) 페이징에서 사용하는 커서.
+ * 마지막으로 읽은 정렬 키와, 정렬 키가 같을 때 순서를 보장하기 위한 id를 함께 가지고 있다.
+ * 클라이언트에게는 내부 구조를 알 수 없는 토큰 문자열로만 전달한다.
+ */
+@Getter
+public class KeysetCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final String key;
+    private final Long id;
+
+    private KeysetCursor(String key, Long id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    public static KeysetCursor of(Object key, Long id) {
+        Assert.notNull(key, "Keyset sort key must not be null!");
+        Assert.notNull(id, "Keyset id must not be null!");
+        return new KeysetCursor(String.valueOf(key), id);
+    }
+
+    public String encode() {
+        String raw = key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 토큰이 비어있으면 첫 페이지를 의미하므로 null을 돌려준다.
+     */
+    public static KeysetCursor decode(String token) {
+        if (!StringUtils.hasText(token)) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid keyset cursor: " + token, e);
+        }
+        // 정렬 키 안에 구분자가 들어있을 수 있으니 마지막 구분자를 기준으로 자른다.
+        int idx = raw.lastIndexOf(SEPARATOR);
+        if (idx < 0) {
+            throw new IllegalArgumentException("Invalid keyset cursor: " + token);
+        }
+        try {
+            return new KeysetCursor(raw.substring(0, idx), Long.valueOf(raw.substring(idx + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid keyset cursor: " + token, e);
+        }
+    }
+}
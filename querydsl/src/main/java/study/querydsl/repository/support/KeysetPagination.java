@@ -0,0 +1,82 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * offset 대신 마지막으로 읽은 (정렬 키, id) 다음부터 읽어오는 키셋 페이징.
+ * offset은 앞의 row들을 전부 읽고 버리기 때문에 뒤쪽 페이지일수록 느려지지만,
+ * 키셋 페이징은 인덱스에서 커서 위치를 바로 찾아가기 때문에 몇번째 페이지든 비용이 같다.
+ */
+public final class KeysetPagination {
+
+    private KeysetPagination() {
+    }
+
+    /**
+     * size + 1개를 가져와서 다음 페이지 존재 여부를 판단한다.
+     * @param query  where 조건까지 적용된 조회 쿼리 (정렬, limit은 여기서 적용)
+     * @param keyset 정렬 기준
+     * @param cursor 이전 페이지에서 받은 토큰, 첫 페이지는 null
+     * @param size   페이지 크기
+     */
+    public static <T> KeysetSlice<T> fetch(JPAQuery<T> query, Keyset<T, ?> keyset, String cursor, int size) {
+        Assert.isTrue(size > 0, "Keyset page size must be greater than zero!");
+
+        List<T> rows = query
+                .where(keyset.after(KeysetCursor.decode(cursor)))
+                .orderBy(keyset.orderBy())
+                .limit(size + 1L)
+                .fetch();
+
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? new ArrayList<>(rows.subList(0, size)) : rows;
+        String nextCursor = hasNext ? keyset.cursorOf(content.get(content.size() - 1)).encode() : null;
+
+        return new KeysetSlice<>(content, size, hasNext, nextCursor);
+    }
+
+    /**
+     * 키셋 페이지를 차례로 읽어가며 흘려보낸다. 한번에 한 페이지만 메모리에 올라간다.
+     * 페이지마다 짧은 쿼리를 따로 실행하므로 stream()과 달리 커넥션(트랜잭션)을 계속 잡고 있지 않아도 된다.
+     * @param page 커서(첫 페이지는 null)를 받아 다음 페이지를 조회하는 함수
+     */
+    public static <T> Stream<T> stream(Function<String, KeysetSlice<T>> page) {
+        Iterator<T> iterator = new Iterator<T>() {
+            private KeysetSlice<T> current;
+            private Iterator<T> rows;
+
+            @Override
+            public boolean hasNext() {
+                if (current == null) {
+                    current = page.apply(null);
+                    rows = current.getContent().iterator();
+                }
+                while (!rows.hasNext() && current.isHasNext()) {
+                    current = page.apply(current.getNextCursor());
+                    rows = current.getContent().iterator();
+                }
+                return rows.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return rows.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+    }
+}
@@ -0,0 +1,26 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 키셋 페이징 결과.
+ * 전체 개수는 알 수 없고, 다음 페이지가 있으면 nextCursor로 이어서 조회한다.
+ */
+@Getter
+public class KeysetSlice<T> {
+
+    private final List<T> content;
+    private final int size;
+    private final boolean hasNext;
+    private final String nextCursor;
+
+    public KeysetSlice(List<T> content, int size, boolean hasNext, String nextCursor) {
+        this.content = Collections.unmodifiableList(content);
+        this.size = size;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+}
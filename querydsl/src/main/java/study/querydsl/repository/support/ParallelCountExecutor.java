@@ -0,0 +1,174 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import study.querydsl.monitoring.MeteredJPAQueryFactory;
+import study.querydsl.monitoring.QueryMetrics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 컨텐츠 쿼리와 count 쿼리를 동시에 실행하기 위한 실행기.
+ * 페이지 응답 시간이 (컨텐츠 + count) 에서 max(컨텐츠, count) 로 줄어든다.
+ *
+ * count 쿼리는 별도의 EntityManager(=별도의 커넥션)에서 크기가 제한된 스레드 풀로 실행된다.
+ * PageableExecutionUtils처럼 count가 필요 없는 경우에는 count를 시작하지 않는다.
+     * 첫 페이지(offset 0) : 컨텐츠가 페이지 크기보다 적으면 그 개수가 total이다. 컨텐츠를 먼저 조회하고,
+       페이지가 가득 찼을 때만 현재 스레드에서 count를 실행한다. (이미 컨텐츠 조회가 끝났으므로 동시 실행 이득이 없다.)
+     * 다음 페이지(offset > 0) : count를 먼저 시작하고 컨텐츠를 조회한다. 마지막 페이지라서 count가 필요 없으면
+       아직 시작하지 않은 count는 취소한다. 이미 실행 중인 count는 끝까지 실행된다. (스레드 인터럽트로는 JDBC 쿼리가 취소되지 않는다.)
+ *
+ * 현재 스레드에서 count를 실행하는 경우 (호출한 트랜잭션, 커넥션 사용)
+     * 풀과 큐가 가득 찬 경우
+     * count 스레드의 결과를 timeout 안에 받지 못한 경우. 요청 스레드가 커넥션을 잡은 채로 count 스레드가
+       같은 풀의 커넥션을 기다리면 부하가 높을 때 서로 기다리게 되므로 무한정 기다리지 않는다.
+     * 읽기/쓰기 트랜잭션 안에서 호출한 경우 (아래 격리 참고)
+ *
+ * 격리
+     * count 스레드는 별도 커넥션(별도 트랜잭션)에서 실행되므로 커밋된 데이터만 본다.
+       현재 트랜잭션에서 아직 커밋하지 않은 변경이 total에 포함되지 않으므로, 읽기/쓰기 트랜잭션 안에서는 동시에 실행하지 않는다.
+     * 조회 전용 트랜잭션이나 트랜잭션 밖에서는 컨텐츠와 count가 서로 다른 시점의 데이터를 볼 수 있다. (페이징 total은 원래 근사값이다.)
+     * 요청 하나당 커넥션을 2개 사용하므로 커넥션 풀 크기를 함께 고려해야 한다.
+ */
+@Component
+public class ParallelCountExecutor implements DisposableBean {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final EntityManager entityManager;
+    private final QueryMetrics queryMetrics;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    public ParallelCountExecutor(EntityManagerFactory entityManagerFactory, EntityManager entityManager,
+                                 QueryMetrics queryMetrics,
+                                 @Value("${querydsl.paging.parallel-count.threads:4}") int threads,
+                                 @Value("${querydsl.paging.parallel-count.queue-capacity:100}") int queueCapacity,
+                                 @Value("${querydsl.paging.parallel-count.timeout-millis:2000}") long timeoutMillis) {
+        Assert.isTrue(threads > 0, "Parallel count threads must be greater than zero!");
+        Assert.isTrue(timeoutMillis > 0, "Parallel count timeout must be greater than zero!");
+        this.entityManagerFactory = entityManagerFactory;
+        this.entityManager = entityManager;
+        this.queryMetrics = queryMetrics;
+        this.timeoutMillis = timeoutMillis;
+        // 가득 차면 RejectedExecutionException -> 현재 스레드에서 count (CallerRunsPolicy는 커넥션을 하나 더 잡는다)
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CountThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param pageable
+     * @param content    현재 스레드(현재 트랜잭션)에서 실행할 컨텐츠 조회
+     * @param countQuery JPAQueryFactory를 받아 count 쿼리를 만드는 함수.
+     *                   count 스레드에서는 별도 EntityManager로 만든 factory가, 현재 스레드에서는 현재 EntityManager의 factory가 넘어온다.
+     */
+    public <T> Page<T> getPage(Pageable pageable, Supplier<List<T>> content,
+                               Function<JPAQueryFactory, JPAQuery> countQuery) {
+        if (pageable.isUnpaged()) {
+            // 페이징하지 않으면 count 쿼리는 필요 없다.
+            return PageableExecutionUtils.getPage(content.get(), pageable, () -> 0L);
+        }
+        if (pageable.getOffset() == 0 || isReadWriteTransaction()) {
+            return PageableExecutionUtils.getPage(content.get(), pageable, () -> countInThread(countQuery));
+        }
+
+        Future<Long> total = submit(countQuery);
+        try {
+            List<T> rows = content.get();
+            return PageableExecutionUtils.getPage(rows, pageable, () -> await(total, countQuery));
+        } finally {
+            // count가 필요 없었거나 컨텐츠 조회가 실패한 경우. 아직 시작하지 않았으면 실행되지 않는다.
+            if (total != null) {
+                total.cancel(false);
+            }
+        }
+    }
+
+    private Future<Long> submit(Function<JPAQueryFactory, JPAQuery> countQuery) {
+        // count 스레드에서도 호출한 리포지토리 메서드로 기록되게 넘겨준다.
+        String method = queryMetrics.currentMethod();
+        try {
+            return executor.submit(() -> queryMetrics.callAs(method, () -> count(countQuery)));
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private long count(Function<JPAQueryFactory, JPAQuery> countQuery) {
+        EntityManager countEntityManager = entityManagerFactory.createEntityManager();
+        try {
+            return countQuery.apply(new MeteredJPAQueryFactory(countEntityManager, queryMetrics)).fetchCount();
+        } finally {
+            countEntityManager.close();
+        }
+    }
+
+    private long countInThread(Function<JPAQueryFactory, JPAQuery> countQuery) {
+        return countQuery.apply(new MeteredJPAQueryFactory(entityManager, queryMetrics)).fetchCount();
+    }
+
+    private long await(Future<Long> total, Function<JPAQueryFactory, JPAQuery> countQuery) {
+        if (total == null) {
+            return countInThread(countQuery);
+        }
+        try {
+            return total.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // count 스레드가 커넥션을 기다리는 중일 수 있다. 시작하지 않았으면 취소하고 현재 커넥션으로 센다.
+            total.cancel(false);
+            return countInThread(countQuery);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for count query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Count query failed", e.getCause());
+        }
+    }
+
+    private boolean isReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static class CountThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "count-query-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
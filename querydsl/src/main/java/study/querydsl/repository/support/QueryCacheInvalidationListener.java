@@ -0,0 +1,30 @@
+package study.querydsl.repository.support;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreRemove;
+import javax.persistence.PreUpdate;
+
+/**
+ * 엔티티 변경 시 조회 캐시를 비우는 JPA 엔티티 리스너.
+ * Hibernate가 스프링 빈 컨테이너를 통해 생성하므로 빈을 주입받을 수 있다.
+ * 변경을 가장 먼저 알 수 있는 Pre 이벤트(persist 시점, flush 중 update/delete SQL 직전)만 사용한다.
+ * 트랜잭션 안에서는 처음 한번만 비운다. (QueryCacheInvalidator 참고)
+ *
+ * 벌크 연산(update, delete의 execute())은 엔티티 리스너를 거치지 않으므로
+ * Querydsl4RepositorySupport.executeBulk를 사용하거나 QueryCacheInvalidator를 직접 호출해야 한다.
+ */
+public class QueryCacheInvalidationListener {
+
+    private final QueryCacheInvalidator invalidator;
+
+    public QueryCacheInvalidationListener(QueryCacheInvalidator invalidator) {
+        this.invalidator = invalidator;
+    }
+
+    @PrePersist
+    @PreUpdate
+    @PreRemove
+    public void onWrite(Object entity) {
+        invalidator.invalidateAll();
+    }
+}
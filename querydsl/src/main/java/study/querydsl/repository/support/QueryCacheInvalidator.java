@@ -0,0 +1,82 @@
+package study.querydsl.repository.support;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 등록된 모든 조회 캐시(InvalidatableCache)를 비운다.
+ *
+ * 트랜잭션 안에서는 처음 변경할 때 한번만 비우고 트랜잭션이 끝나면(커밋, 롤백 모두) 한번 더 비운다.
+ * (saveAll로 100만건을 저장해도 캐시를 비우는 것은 트랜잭션당 2번이다.)
+ * 커밋 전에 다른 요청이 옛날 값으로 캐시를 채웠을 수도 있기 때문이다.
+ * 읽기/쓰기 트랜잭션 안에서는 캐시를 거치지 않으므로(shouldBypassCaches) 자기 변경 내용이 보이고,
+ * 커밋되지 않은 값이 다른 요청이 보는 캐시에 들어가지도 않는다.
+ *
+ * 트랜잭션마다 등록한 완료 후 처리(InvalidateAfterCompletion)로 변경 여부를 판단한다.
+ * REQUIRES_NEW로 안쪽 트랜잭션을 시작하면 바깥 트랜잭션의 synchronization은 잠시 빠지므로 안쪽 트랜잭션도 따로 등록된다.
+ */
+@Component
+public class QueryCacheInvalidator {
+
+    private final ObjectProvider<InvalidatableCache> caches;
+
+    public QueryCacheInvalidator(ObjectProvider<InvalidatableCache> caches) {
+        this.caches = caches;
+    }
+
+    public void invalidateAll() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateNow();
+            return;
+        }
+        if (hasPendingWrites()) {
+            return;     // 이번 트랜잭션에서 이미 비웠다.
+        }
+        invalidateNow();
+        TransactionSynchronizationManager.registerSynchronization(new InvalidateAfterCompletion());
+    }
+
+    /**
+     * 조회 캐시를 거치지 않고 DB에서 조회해야 하는지.
+     * 읽기/쓰기 트랜잭션에서는 아직 flush 하지 않은 변경이 있을 수 있다. (@PreUpdate, @PreRemove는 flush 때 호출되므로
+     * hasPendingWrites만으로는 알 수 없다.) 캐시 대신 쿼리를 실행하면 자동 flush 후의 결과를 보게 된다.
+     * 조회 전용 트랜잭션과 트랜잭션 밖에서는 이번 트랜잭션에서 변경(persist 등)하지 않았으면 캐시를 사용한다.
+     */
+    public static boolean shouldBypassCaches() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return true;
+        }
+        return hasPendingWrites();
+    }
+
+    /**
+     * 현재 트랜잭션에서 Member/Team 변경을 이미 감지했는지. (엔티티 리스너가 호출된 경우)
+     */
+    public static boolean hasPendingWrites() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof InvalidateAfterCompletion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void invalidateNow() {
+        caches.forEach(InvalidatableCache::invalidateAll);
+    }
+
+    private class InvalidateAfterCompletion extends TransactionSynchronizationAdapter {
+
+        @Override
+        public void afterCompletion(int status) {
+            invalidateNow();
+        }
+    }
+}
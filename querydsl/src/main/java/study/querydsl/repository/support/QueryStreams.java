@@ -0,0 +1,100 @@
+package study.querydsl.repository.support;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.util.Assert;
+
+import javax.persistence.EntityManager;
+import javax.persistence.metamodel.EntityType;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 조회 결과를 List로 한꺼번에 만들지 않고 한 row씩 흘려보내는 스트리밍 조회.
+ * Hibernate ScrollableResults(forward only) 위에서 동작하며, JDBC fetch size 만큼씩 DB에서 읽어온다.
+ * 결과 크기와 상관없이 메모리 사용량이 일정하게 유지된다.
+ *
+ * 주의
+     * 커넥션을 계속 잡고 있어야 하므로 트랜잭션 안에서 소비해야 한다.
+     * 사용이 끝나면 반드시 close 해야 한다. (try-with-resources 사용)
+ */
+public final class QueryStreams {
+
+    private QueryStreams() {
+    }
+
+    /**
+     * 엔티티를 조회하는 경우 다음 row로 넘어갈 때 이전 row를 영속성 컨텍스트에서 detach 해서
+     * 1차 캐시가 계속 커지지 않도록 한다.
+     * DTO, 값 조회는 영속성 컨텍스트에 올라가지 않으므로 detach 하지 않는다.
+     * (엔티티가 아닌 객체로 em.contains를 호출하면 IllegalArgumentException이 발생한다.)
+     * @param query     조회 쿼리
+     * @param fetchSize JDBC fetch size
+     * @param em        detach를 수행할 EntityManager
+     */
+    public static <T> Stream<T> stream(JPAQuery<T> query, int fetchSize, EntityManager em) {
+        Assert.isTrue(fetchSize > 0, "Fetch size must be greater than zero!");
+
+        CloseableIterator<T> rows = query
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .iterate();
+
+        Iterator<T> iterator = isEntity(query.getMetadata().getProjection(), em)
+                ? new DetachingIterator<>(rows, em)
+                : rows;
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(rows::close);
+    }
+
+    // 조회 대상이 매핑된 엔티티인지 스트림마다 한번만 확인한다.
+    private static boolean isEntity(Expression<?> projection, EntityManager em) {
+        if (!(projection instanceof EntityPath)) {
+            return false;
+        }
+        for (EntityType<?> entity : em.getMetamodel().getEntities()) {
+            if (entity.getJavaType().equals(projection.getType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class DetachingIterator<T> implements Iterator<T> {
+
+        private final Iterator<T> delegate;
+        private final EntityManager em;
+        private T previous;
+
+        DetachingIterator(Iterator<T> delegate, EntityManager em) {
+            this.delegate = delegate;
+            this.em = em;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public T next() {
+            // 다음 row를 요청했다면 이전 row의 처리는 끝난 것이다.
+            detachPrevious();
+            previous = delegate.next();
+            return previous;
+        }
+
+        private void detachPrevious() {
+            // 이미 detach 되었거나 영속성 컨텍스트가 비워졌을 수도 있다.
+            if (previous != null && em.contains(previous)) {
+                em.detach(previous);
+            }
+        }
+    }
+}
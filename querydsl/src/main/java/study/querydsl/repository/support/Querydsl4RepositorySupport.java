@@ -1,13 +1,22 @@
 package study.querydsl.repository.support;
 
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.dml.DMLClause;
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberPath;
 import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPADeleteClause;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import
         org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
@@ -16,10 +25,16 @@ import org.springframework.data.querydsl.SimpleEntityPathResolver;
 import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
+import study.querydsl.monitoring.MeteredJPAQueryFactory;
+import study.querydsl.monitoring.QueryMetrics;
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Querydsl 4.x 버전에 맞춘 Querydsl 지원 라이브러리
@@ -52,17 +67,34 @@ import java.util.function.Function;
      * 스프링 데이터 Sort 지원
      * select() , selectFrom() 으로 시작 가능
      * EntityManager , QueryFactory 제공
+     * 조회 전용 모드 (readOnly = true) : 조회 전용 트랜잭션에서 실행하는 조회 쿼리에 read-only 힌트 (ReadOnlyQueries 참고)
+     * selectFrom() 호출 위치별 fetch join 학습 (AdaptiveFetchPlans 참고, 페이징 메서드의 selectFrom 컨텐츠 쿼리 포함)
  */
 
 @Repository
 public abstract class Querydsl4RepositorySupport {
     private final Class domainClass;
+    private final boolean readOnly;
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private ParallelCountExecutor parallelCountExecutor;
+    private QueryCacheInvalidator cacheInvalidator;
+    private ChunkedBulkExecutor chunkedBulkExecutor;
+    private QueryMetrics queryMetrics;
+    private AdaptiveFetchPlans adaptiveFetchPlans;
     public Querydsl4RepositorySupport(Class<?> domainClass) {
+        this(domainClass, false);
+    }
+    /**
+     * @param readOnly true면 select(), selectFrom(), 페이징 메서드로 만든 쿼리에 read-only 힌트를 준다.
+     *                 조회 전용 트랜잭션(@Transactional(readOnly = true))에서 만든 쿼리만 대상이며,
+     *                 읽기/쓰기 트랜잭션에 참여해서 조회한 엔티티는 지금처럼 변경 감지 대상이다.
+     */
+    public Querydsl4RepositorySupport(Class<?> domainClass, boolean readOnly) {
         Assert.notNull(domainClass, "Domain class must not be null!");
         this.domainClass = domainClass;
+        this.readOnly = readOnly;
     }
     @Autowired
     public void setEntityManager(EntityManager entityManager) {
@@ -74,7 +106,39 @@ public abstract class Querydsl4RepositorySupport {
         this.entityManager = entityManager;
         this.querydsl = new Querydsl(entityManager, new
                 PathBuilder<>(path.getType(), path.getMetadata()));
-        this.queryFactory = new JPAQueryFactory(entityManager);
+        this.queryFactory = createQueryFactory();
+    }
+    @Autowired
+    public void setQueryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+        if (entityManager != null) {
+            this.queryFactory = createQueryFactory();
+        }
+    }
+    // 지표가 있으면 모든 쿼리의 실행 시간을 리포지토리 메서드별로 기록한다.
+    private JPAQueryFactory createQueryFactory() {
+        if (readOnly) {
+            return ReadOnlyQueries.queryFactory(entityManager, queryMetrics);
+        }
+        return queryMetrics != null
+                ? new MeteredJPAQueryFactory(entityManager, queryMetrics)
+                : new JPAQueryFactory(entityManager);
+    }
+    @Autowired
+    public void setParallelCountExecutor(ParallelCountExecutor parallelCountExecutor) {
+        this.parallelCountExecutor = parallelCountExecutor;
+    }
+    @Autowired
+    public void setCacheInvalidator(QueryCacheInvalidator cacheInvalidator) {
+        this.cacheInvalidator = cacheInvalidator;
+    }
+    @Autowired
+    public void setChunkedBulkExecutor(ChunkedBulkExecutor chunkedBulkExecutor) {
+        this.chunkedBulkExecutor = chunkedBulkExecutor;
+    }
+    @Autowired
+    public void setAdaptiveFetchPlans(AdaptiveFetchPlans adaptiveFetchPlans) {
+        this.adaptiveFetchPlans = adaptiveFetchPlans;
     }
     @PostConstruct
     public void validate() {
@@ -94,25 +158,181 @@ public abstract class Querydsl4RepositorySupport {
     protected <T> JPAQuery<T> select(Expression<T> expr) {
         return getQueryFactory().select(expr);
     }
+    /**
+     * 호출한 리포지토리 메서드에서 연관관계를 계속 사용하면 fetch join이 자동으로 붙는다. (AdaptiveFetchPlans 참고)
+     */
     protected <T> JPAQuery<T> selectFrom(EntityPath<T> from) {
-        return getQueryFactory().selectFrom(from);
+        return applyFetchPlan(getQueryFactory().selectFrom(from));
+    }
+    protected JPAUpdateClause update(EntityPath<?> path) {
+        return getQueryFactory().update(path);
+    }
+    protected JPADeleteClause delete(EntityPath<?> path) {
+        return getQueryFactory().delete(path);
+    }
+    /**
+     * 벌크 update, delete를 실행한다.
+     * 벌크 연산은 엔티티 리스너를 거치지 않으므로 실행 후 조회 결과 캐시를 직접 비운다.
+     */
+    protected long executeBulk(DMLClause<?> clause) {
+        long affected = clause.execute();
+        if (cacheInvalidator != null) {
+            cacheInvalidator.invalidateAll();
+        }
+        return affected;
+    }
+    /**
+     * 벌크 update, delete를 id 범위로 나눠서 청크마다 별도 트랜잭션으로 실행한다. (ChunkedBulkExecutor 참고)
+     * 청크 크기와 쉬는 시간은 querydsl.bulk 설정을 사용하고, 진행 상황은 로그로 남긴다.
+     * ex) executeBulkInChunks(member.id, member.age.lt(28),
+     *         chunk -> update(member).set(member.username, "비회원").where(chunk))
+     */
+    protected BulkProgress executeBulkInChunks(NumberPath<Long> id, Predicate condition,
+                                               Function<Predicate, DMLClause<?>> clause) {
+        Assert.notNull(chunkedBulkExecutor, "ChunkedBulkExecutor must not be null!");
+        return executeBulkInChunks(id, condition, chunkedBulkExecutor.getDefaultChunkSize(),
+                chunkedBulkExecutor.getDefaultPause(), clause,
+                progress -> chunkedBulkExecutor.logProgress(domainClass.getSimpleName(), progress));
+    }
+    protected BulkProgress executeBulkInChunks(NumberPath<Long> id, Predicate condition, long chunkSize, Duration pause,
+                                               Function<Predicate, DMLClause<?>> clause,
+                                               Consumer<BulkProgress> listener) {
+        Assert.notNull(chunkedBulkExecutor, "ChunkedBulkExecutor must not be null!");
+        return chunkedBulkExecutor.execute(id, condition, chunkSize, pause, clause, listener);
+    }
+    /**
+     * 컨텐츠 쿼리에서 정렬, fetch join, 조건에서 쓰지 않는 left join을 걸러낸 count 쿼리를 만든다.
+     * 페이징(offset, limit, 정렬)을 적용하기 전의 쿼리를 넘겨야 한다.
+     */
+    protected JPAQuery<?> countQueryOf(JPAQuery<?> contentQuery) {
+        return CountQueries.derive(getEntityManager(), contentQuery);
     }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
         JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        // 컨텐츠 쿼리를 그대로 count에 쓰지 않고 필요없는 조인을 제거한 count 쿼리를 사용한다.
+        JPAQuery<?> countQuery = countQueryOf(jpaQuery);
         List<T> content = getQuerydsl().applyPagination(pageable,
-                jpaQuery).fetch();
+                applyFetchPlan(jpaQuery)).fetch();
         return PageableExecutionUtils.getPage(content, pageable,
-                jpaQuery::fetchCount);
+                countQuery::fetchCount);
     }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
             JPAQuery> countQuery) {
-        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+        JPAQuery jpaContentQuery = applyFetchPlan(contentQuery.apply(getQueryFactory()));
         List<T> content = getQuerydsl().applyPagination(pageable,
                 jpaContentQuery).fetch();
         JPAQuery countResult = countQuery.apply(getQueryFactory());
         return PageableExecutionUtils.getPage(content, pageable,
                 countResult::fetchCount);
     }
-}
\ No newline at end of file
+
+    /**
+     * deferred join(late row lookup) 페이징.
+     * offset이 큰 페이지에서 조인된 projection 전체를 만들고 버리는 대신
+     * 1. idQuery의 조건으로 id만 정렬, 페이징해서 가져오고 (정렬에는 항상 id가 마지막 기준으로 추가된다.)
+     *    idQuery의 조인은 그대로 유지하고, 정렬 경로는 조인 별칭을 사용한다. (DeferredJoins.useJoinAliases 참고)
+     *    조건에서 쓰지 않는 단일 값 left join은 count 쿼리에서만 제거한다. (CountQueries 참고)
+     * 2. contentQuery에 where id in (...)을 붙여 해당 row들만 projection 한다. (1번의 순서 유지)
+     * @param id          페이징 기준 id (ex. member.id)
+     * @param idQuery     from, join, where 까지 적용된 쿼리 (select는 id로 바뀐다. fetch join은 사용하지 않는다.)
+     * @param contentQuery 최종 projection 쿼리 (where는 id in 조건만 추가된다.)
+     * @param idExtractor projection 결과에서 id를 꺼내는 함수
+     */
+    protected <T> Page<T> applyDeferredJoinPagination(Pageable pageable, NumberPath<Long> id,
+                                                      Function<JPAQueryFactory, JPAQuery<?>> idQuery,
+                                                      Function<JPAQueryFactory, JPAQuery<T>> contentQuery,
+                                                      Function<T, Long> idExtractor) {
+        JPAQuery<?> baseQuery = idQuery.apply(getQueryFactory());
+        JPAQuery<?> countQuery = countQueryOf(baseQuery);
+
+        // id 쿼리는 조인을 그대로 둔다. 정렬이 left join한 연관관계를 쓰면(ex. team.name) 그 조인이 필요하다.
+        JPAQuery<Long> pageIdsQuery = baseQuery.clone().select(id);
+        if (pageable.isPaged()) {
+            Sort sort = DeferredJoins.withIdTieBreaker(pageable.getSort(), id);
+            getQuerydsl().applySorting(sort, pageIdsQuery);
+            // member.team.name 같은 정렬 경로는 암묵적 inner join이 되므로 조인 별칭(team.name)으로 바꾼다.
+            QueryMetadata metadata = pageIdsQuery.getMetadata();
+            List<OrderSpecifier<?>> orders = DeferredJoins.useJoinAliases(metadata.getOrderBy(), metadata.getJoins());
+            metadata.clearOrderBy();
+            orders.forEach(metadata::addOrderBy);
+            pageIdsQuery.offset(pageable.getOffset()).limit(pageable.getPageSize());
+        }
+        List<Long> ids = pageIdsQuery.fetch();
+
+        List<T> content = ids.isEmpty()
+                ? Collections.emptyList()
+                : DeferredJoins.orderByIds(ids, contentQuery.apply(getQueryFactory())
+                        .where(id.in(ids))
+                        .fetch(), idExtractor);
+        return PageableExecutionUtils.getPage(content, pageable,
+                countQuery::fetchCount);
+    }
+
+    /**
+     * count 쿼리 없이 pageSize + 1개를 가져와 다음 페이지 존재 여부만 판단한다.
+     * 스프링 데이터 Sort도 적용된다.
+     */
+    protected <T> Slice<T> applySlicePagination(Pageable pageable,
+                                                Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery jpaQuery = applyFetchPlan(contentQuery.apply(getQueryFactory()));
+        getQuerydsl().applySorting(pageable.getSort(), jpaQuery);
+        return SlicePagination.fetch(jpaQuery, pageable);
+    }
+
+    /**
+     * applyPagination(pageable, contentQuery, countQuery)와 같지만 count 쿼리를
+     * 별도 EntityManager(커넥션)에서 컨텐츠 쿼리와 동시에 실행한다. (count가 필요한 경우만, ParallelCountExecutor 참고)
+     * countQuery에는 count 전용 EntityManager로 만든 JPAQueryFactory가 넘어온다. (현재 스레드에서 세는 경우는 현재 EntityManager)
+     */
+    protected <T> Page<T> applyPaginationParallel(Pageable pageable,
+                                                  Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
+            JPAQuery> countQuery) {
+        Assert.notNull(parallelCountExecutor, "ParallelCountExecutor must not be null!");
+        return parallelCountExecutor.getPage(pageable, () -> {
+            JPAQuery jpaContentQuery = applyFetchPlan(contentQuery.apply(getQueryFactory()));
+            List<T> content = getQuerydsl().applyPagination(pageable,
+                    jpaContentQuery).fetch();
+            return content;
+        }, countQuery);
+    }
+
+    /**
+     * 결과를 List로 모으지 않고 fetchSize 단위로 읽어가며 흘려보낸다.
+     * 트랜잭션 안에서 소비하고, 다 쓰면 close 해야 한다.
+     */
+    protected <T> Stream<T> stream(JPAQuery<T> query, int fetchSize) {
+        return QueryStreams.stream(query, fetchSize, getEntityManager());
+    }
+
+    /**
+     * offset 대신 커서를 사용하는 키셋 페이징.
+     * 정렬은 keyset에 정의된 (정렬 키, id) 순서로 적용되므로 contentQuery에서는 정렬을 지정하지 않는다.
+     */
+    protected <T> KeysetSlice<T> applyKeysetPagination(String cursor, int size, Keyset<T, ?> keyset,
+                                                       Function<JPAQueryFactory, JPAQuery<T>> contentQuery) {
+        JPAQuery<T> jpaContentQuery = applyFetchPlan(contentQuery.apply(getQueryFactory()));
+        return KeysetPagination.fetch(jpaContentQuery, keyset, cursor, size);
+    }
+
+    /**
+     * selectFrom 형태(projection이 from 엔티티)의 쿼리에 호출 위치에서 학습한 fetch join을 붙인다. (AdaptiveFetchPlans 참고)
+     * 페이징 메서드에 넘긴 람다 안의 selectFrom도 여기서 적용된다. dto projection 등 다른 형태는 그대로 둔다.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> JPAQuery<T> applyFetchPlan(JPAQuery<T> query) {
+        if (adaptiveFetchPlans == null || queryMetrics == null) {
+            return query;
+        }
+        QueryMetadata metadata = query.getMetadata();
+        if (metadata.getJoins().isEmpty()) {
+            return query;
+        }
+        Expression<?> from = metadata.getJoins().get(0).getTarget();
+        if (!(from instanceof EntityPath) || !from.equals(metadata.getProjection())) {
+            return query;
+        }
+        return adaptiveFetchPlans.apply(queryMetrics.currentMethod(), (EntityPath<T>) from, query);
+    }
+}
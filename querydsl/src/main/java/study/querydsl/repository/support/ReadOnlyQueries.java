@@ -0,0 +1,69 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.FlushMode;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.monitoring.MeteredJPAQueryFactory;
+import study.querydsl.monitoring.QueryMetrics;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+/**
+ * 조회 전용 쿼리.
+ *
+ * 하이버네이트는 조회한 엔티티마다 변경 감지용 스냅샷(필드 값 복사본)을 만들고 flush 때마다 비교한다.
+ * 조회만 하는 화면에서는 필요없는 메모리와 CPU이므로 read-only 힌트를 주어 스냅샷을 만들지 않는다.
+ *     org.hibernate.readOnly : 조회한 엔티티를 읽기 전용으로 영속성 컨텍스트에 올린다. (스냅샷 없음, 변경해도 update 되지 않음)
+ *     org.hibernate.flushMode = MANUAL : 쿼리 실행 전 자동 flush(변경 감지)를 하지 않는다.
+ * 힌트는 조회 전용 트랜잭션(@Transactional(readOnly = true))에서 만든 쿼리에만 준다.
+ *     읽기/쓰기 트랜잭션에 참여해서 조회하면 호출한 쪽이 엔티티를 변경할 수 있으므로 변경 감지와 자동 flush를 그대로 둔다.
+ *     (조회 전용 트랜잭션은 스프링이 세션도 MANUAL로 바꾼다.)
+ */
+public final class ReadOnlyQueries {
+
+    private ReadOnlyQueries() {
+    }
+
+    public static <T> JPAQuery<T> readOnly(JPAQuery<T> query) {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            query.setHint(QueryHints.READ_ONLY, true);
+            query.setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+        }
+        return query;
+    }
+
+    /**
+     * em.createQuery(jpql)로 만든 쿼리에 같은 힌트를 준다. (MemberSearchQueryTemplates)
+     */
+    public static Query readOnly(Query query) {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            query.setHint(QueryHints.READ_ONLY, true);
+            query.setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+        }
+        return query;
+    }
+
+    /**
+     * select(), selectFrom() 등으로 만든 쿼리에 read-only 힌트가 붙는 JPAQueryFactory. (조회 전용 트랜잭션인 경우만)
+     * update(), delete()는 그대로다. queryMetrics가 있으면 실행 시간도 기록한다.
+     */
+    public static JPAQueryFactory queryFactory(EntityManager entityManager, QueryMetrics queryMetrics) {
+        if (queryMetrics == null) {
+            return new JPAQueryFactory(entityManager) {
+                @Override
+                public JPAQuery<?> query() {
+                    return readOnly(super.query());
+                }
+            };
+        }
+        return new MeteredJPAQueryFactory(entityManager, queryMetrics) {
+            @Override
+            public JPAQuery<?> query() {
+                return readOnly(super.query());
+            }
+        };
+    }
+}
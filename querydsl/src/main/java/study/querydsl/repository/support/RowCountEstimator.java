@@ -0,0 +1,92 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * DB 통계 정보로 테이블 전체 row 수를 추정한다.
+ * count(*)는 테이블 전체를 읽어야 하지만 통계 정보 조회는 테이블 크기와 상관없이 바로 끝난다.
+ * 통계 정보가 없거나 지원하지 않는 DB면 빈 값을 돌려주고, 호출하는 쪽에서 정확한 count를 사용한다.
+ *
+ * 같은 이름의 테이블이 여러 스키마에 있을 수 있으므로 엔티티 테이블의 스키마(지정하지 않았으면 현재 스키마)로 찾는다.
+ *
+ * 지원 DB
+     * H2 : INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE (현재 스키마 : SCHEMA())
+     * PostgreSQL : pg_class.reltuples (ANALYZE 전에는 -1, 현재 스키마 : current_schema())
+     * MySQL : information_schema.TABLES.TABLE_ROWS (현재 스키마 : database())
+ */
+@Component
+public class RowCountEstimator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private volatile String estimateSql;
+
+    public RowCountEstimator(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public OptionalLong estimate(Class<?> entityClass) {
+        String sql = estimateSql();
+        if (sql.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        try {
+            String tableName = tableName(entityClass);
+            int dot = tableName.lastIndexOf('.');
+            String schema = dot < 0 ? null : tableName.substring(0, dot);
+            List<Long> rows = jdbcTemplate.queryForList(sql, Long.class, schema, tableName.substring(dot + 1));
+            if (rows.isEmpty() || rows.get(0) == null || rows.get(0) < 0) {
+                return OptionalLong.empty();
+            }
+            return OptionalLong.of(rows.get(0));
+        } catch (DataAccessException e) {
+            // 통계 조회 권한이 없는 등의 경우에는 정확한 count로 대신한다.
+            return OptionalLong.empty();
+        }
+    }
+
+    // @Table(schema = ...)를 지정했으면 schema.table 형태다.
+    private String tableName(Class<?> entityClass) {
+        EntityPersister persister = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getMetamodel().entityPersister(entityClass);
+        return ((AbstractEntityPersister) persister).getTableName();
+    }
+
+    private String estimateSql() {
+        if (estimateSql == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            estimateSql = sqlFor(product == null ? "" : product.toLowerCase());
+        }
+        return estimateSql;
+    }
+
+    private static String sqlFor(String product) {
+        if (product.contains("h2")) {
+            return "select ROW_COUNT_ESTIMATE from INFORMATION_SCHEMA.TABLES"
+                    + " where upper(TABLE_SCHEMA) = upper(coalesce(cast(? as varchar), SCHEMA()))"
+                    + " and upper(TABLE_NAME) = upper(?)";
+        }
+        if (product.contains("postgresql")) {
+            return "select cast(c.reltuples as bigint) from pg_class c join pg_namespace n on n.oid = c.relnamespace"
+                    + " where n.nspname = coalesce(cast(? as text), current_schema())"
+                    + " and c.relname = lower(?) and c.relkind = 'r'";
+        }
+        if (product.contains("mysql") || product.contains("mariadb")) {
+            return "select TABLE_ROWS from information_schema.TABLES"
+                    + " where TABLE_SCHEMA = coalesce(?, database()) and TABLE_NAME = ?";
+        }
+        return "";
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * count 쿼리 없이 다음 페이지가 있는지만 알려주는 Slice 페이징.
+ * 페이지 크기보다 한 개 더(pageSize + 1) 가져와서, 남는 row가 있으면 다음 페이지가 있다고 판단한다.
+ * 전체 개수가 필요 없는 화면(더보기, 무한 스크롤)에서는 가장 비싼 count 쿼리를 생략할 수 있다.
+ */
+public final class SlicePagination {
+
+    private SlicePagination() {
+    }
+
+    /**
+     * @param query    조건과 정렬까지 적용된 쿼리 (offset, limit은 여기서 적용)
+     * @param pageable
+     */
+    public static <T> Slice<T> fetch(JPAQuery<T> query, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(query.fetch(), pageable, false);
+        }
+
+        List<T> rows = query
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1)
+                .fetch();
+
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<T> content = hasNext ? new ArrayList<>(rows.subList(0, pageable.getPageSize())) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+}
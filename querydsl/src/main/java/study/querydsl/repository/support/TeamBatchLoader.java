@@ -0,0 +1,141 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Team 프록시 일괄 로딩 (DataLoader 방식)
+ *
+ * 회원을 조회한 뒤 member.getTeam().getName()을 꺼내면 팀 프록시마다 select가 한번씩 실행된다. (N+1)
+ *   1. 엔티티가 로딩될 때(PostLoad) 아직 초기화되지 않은 Team 프록시의 id를 세션별 대기 목록에 모아둔다.
+ *   2. 대기 중인 프록시 하나가 초기화될 때(Load) 대기 목록에서 batchSize개를 꺼내
+ *      where t.id in (...) 한번으로 함께 읽어 영속성 컨텍스트에 올린다. (session.byMultipleIds)
+ *   3. 나머지 프록시는 초기화될 때 영속성 컨텍스트에서 바로 찾으므로 SQL이 실행되지 않는다.
+ *      JPQL로 읽으면 이미 있는 프록시까지 초기화되어 호출한 쪽이 사용하지 않은 팀도 사용한 것처럼 보이므로
+ *      (AdaptiveFetchPlans의 사용 비율) 엔티티만 올려두고 프록시는 실제로 사용할 때 초기화되게 둔다.
+ * 대기 목록은 세션(영속성 컨텍스트) 단위라서 트랜잭션이든 요청(open-in-view)이든 영속성 컨텍스트가 살아있는 동안 유효하다.
+ * hibernate.default_batch_fetch_size처럼 모든 엔티티에 적용되는 전역 설정이 아니라 Team에만, 정해진 크기로 동작한다.
+ * 2차 캐시(team 영역)에 있는 팀은 기본 로딩이 캐시에서 읽으므로 in 절에 넣지 않는다.
+ */
+@Component
+@ConditionalOnProperty(name = "querydsl.team-batch-loader.enabled", havingValue = "true", matchIfMissing = true)
+public class TeamBatchLoader implements PostLoadEventListener, LoadEventListener {
+
+    // 세션 하나에 모아둘 수 있는 최대 id 수 (em.clear() 없이 오래 쓰는 세션이 무한히 커지지 않게)
+    private static final int MAX_PENDING = 10_000;
+
+    // 세션은 equals를 재정의하지 않으므로 동일성으로 비교된다. 닫힌 세션은 GC되면 같이 사라진다.
+    private final Map<SessionImplementor, Set<Serializable>> pending = Collections.synchronizedMap(new WeakHashMap<>());
+    private final ThreadLocal<Boolean> loading = new ThreadLocal<>();
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final int batchSize;
+
+    public TeamBatchLoader(EntityManagerFactory entityManagerFactory,
+                           @Value("${querydsl.team-batch-loader.batch-size:100}") int batchSize) {
+        Assert.isTrue(batchSize > 0, "Batch size must be greater than zero!");
+        this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD, this);
+        // 기본 로딩(프록시 하나만 select) 전에 실행되어야 한다.
+        registry.prependListeners(EventType.LOAD, this);
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        Object[] values = event.getPersister().getPropertyValues(event.getEntity());
+        for (Object value : values) {
+            if (value instanceof HibernateProxy) {
+                LazyInitializer initializer = ((HibernateProxy) value).getHibernateLazyInitializer();
+                if (initializer.isUninitialized() && initializer.getPersistentClass() == Team.class) {
+                    Set<Serializable> ids = pending.computeIfAbsent(event.getSession(), session -> new LinkedHashSet<>());
+                    if (ids.size() < MAX_PENDING) {
+                        ids.add(initializer.getIdentifier());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onLoad(LoadEvent event, LoadType loadType) throws HibernateException {
+        // 프록시 초기화(IMMEDIATE_LOAD)만 대상이다. 일괄 조회 중에 다시 들어온 경우는 건너뛴다.
+        if (loadType != IMMEDIATE_LOAD || !Team.class.getName().equals(event.getEntityClassName())
+                || Boolean.TRUE.equals(loading.get())) {
+            return;
+        }
+        SessionImplementor session = event.getSession();
+        Set<Serializable> ids = pending.get(session);
+        if (ids == null || !ids.remove(event.getEntityId()) || isCached(session, event.getEntityId())) {
+            return;
+        }
+        List<Serializable> batch = nextBatch(session, ids, event.getEntityId());
+        loading.set(Boolean.TRUE);
+        try {
+            // 자동 flush 없이 조회만 한다. 결과는 영속성 컨텍스트에 올라가고, 이어지는 기본 로딩이 여기서 찾아간다.
+            session.byMultipleIds(Team.class)
+                    .withBatchSize(batch.size())
+                    .multiLoad(batch);
+        } finally {
+            loading.remove();
+        }
+    }
+
+    /**
+     * 초기화하려는 id를 맨 앞에 두고, 대기 중인 id 중 아직 영속성 컨텍스트와 2차 캐시에 없는 것을 batchSize까지 채운다.
+     */
+    private List<Serializable> nextBatch(SessionImplementor session, Set<Serializable> ids, Serializable first) {
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Team.class);
+        List<Serializable> batch = new ArrayList<>(Math.min(batchSize, ids.size() + 1));
+        batch.add(first);
+        Iterator<Serializable> iterator = ids.iterator();
+        while (batch.size() < batchSize && iterator.hasNext()) {
+            Serializable id = iterator.next();
+            iterator.remove();
+            EntityKey key = session.generateEntityKey(id, persister);
+            if (session.getPersistenceContext().getEntity(key) == null && !isCached(session, id)) {
+                batch.add(id);
+            }
+        }
+        return batch;
+    }
+
+    private boolean isCached(SessionImplementor session, Serializable id) {
+        return session.getFactory().getCache().containsEntity(Team.class, id);
+    }
+}
@@ -0,0 +1,202 @@
+package study.querydsl.repository.support;
+
+import org.springframework.util.Assert;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * 노드 로컬 캐시.
+ * 일정 시간(TTL)이 지나면 만료되고, 전체 무게(weight)가 최대치를 넘으면 가장 오래 사용하지 않은 항목부터 제거한다.(LRU)
+ * 무게를 지정하지 않으면 항목 하나의 무게는 1이다. (= 최대 개수)
+ *
+ * 같은 키를 여러 요청이 동시에 찾으면 한 요청만 loader를 실행하고 나머지는 그 결과를 기다린다. (stampede 방지)
+ * hit / miss / eviction 횟수를 기록한다. (다른 요청의 로딩 결과를 기다린 경우는 hit로 센다.)
+ */
+public class TtlCache<K, V> implements InvalidatableCache {
+
+    private final long ttlNanos;
+    private final long maxWeight;
+    private final ToIntFunction<V> weigher;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private long totalWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // invalidateAll 도중에 로딩한 값이 다시 들어가지 않도록 세대를 관리한다.
+    private final AtomicLong generation = new AtomicLong();
+
+    public TtlCache(long ttl, TimeUnit unit, int maxSize) {
+        this(ttl, unit, maxSize, value -> 1);
+    }
+
+    public TtlCache(long ttl, TimeUnit unit, long maxWeight, ToIntFunction<V> weigher) {
+        Assert.isTrue(ttl > 0, "Cache ttl must be greater than zero!");
+        Assert.isTrue(maxWeight > 0, "Cache max weight must be greater than zero!");
+        Assert.notNull(weigher, "Cache weigher must not be null!");
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * 캐시에 값이 있으면 돌려주고, 없거나 만료되었으면 loader로 읽어와서 저장한다.
+     */
+    public V get(K key, Supplier<V> loader) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            // 같은 키를 이미 다른 요청이 읽어오는 중이면 그 결과를 기다린다.
+            hits.increment();
+            return await(inFlight);
+        }
+
+        misses.increment();
+        long loadGeneration = generation.get();
+        try {
+            V value = loader.get();
+            put(key, value, loadGeneration);
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    private V getIfPresent(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.nanoTime())) {
+                remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private void put(K key, V value, long loadGeneration) {
+        if (value == null) {
+            return;
+        }
+        int weight = weigher.applyAsInt(value);
+        if (weight > maxWeight) {
+            return;     // 너무 큰 값은 다른 항목을 모두 밀어내므로 캐싱하지 않는다.
+        }
+        synchronized (entries) {
+            if (loadGeneration != generation.get()) {
+                return;
+            }
+            remove(key);
+            entries.put(key, new Entry<>(value, weight, System.nanoTime() + ttlNanos));
+            totalWeight += weight;
+            evictIfNeeded();
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while (totalWeight > maxWeight && eldest.hasNext()) {
+            totalWeight -= eldest.next().weight;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private void remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+        }
+    }
+
+    private V await(CompletableFuture<V> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+            totalWeight = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long weight() {
+        synchronized (entries) {
+            return totalWeight;
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public double hitRatio() {
+        long hitCount = hitCount();
+        long requestCount = hitCount + missCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final int weight;
+        private final long expiresAt;
+
+        Entry(V value, int weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
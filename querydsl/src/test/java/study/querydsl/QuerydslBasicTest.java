@@ -18,8 +18,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberDtoMapper;
 import study.querydsl.dto.QMemberDto;
 import study.querydsl.dto.UserDto;
+import study.querydsl.dto.UserDtoMapper;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
@@ -756,6 +758,67 @@ public class QuerydslBasicTest {
         }
     }
 
+    /**
+     * @GenerateMapper로 생성된 매퍼 사용 - Projections.bean / fields / constructor를 그대로 대체한다.
+     * 리플렉션 없이 setter, 생성자를 직접 호출하므로 대량 조회에서 더 빠르다.
+     * 별칭(as)으로 프로퍼티 이름을 맞추는 방식도 Projections와 같다.
+     */
+    @Test
+    public void findDtoByGeneratedMapper() throws Exception {
+        QMember memberSub = new QMember("memberSub");
+
+        List<MemberDto> bean = queryFactory
+                .select(MemberDtoMapper.bean(member.username, member.age))
+                .from(member)
+                .fetch();
+        assertThat(bean).containsExactlyInAnyOrderElementsOf(queryFactory
+                .select(Projections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .fetch());
+
+        List<UserDto> fields = queryFactory
+                .select(UserDtoMapper.fields(member.username.as("name")
+                        , ExpressionUtils.as(JPAExpressions
+                                .select(memberSub.age.max())
+                                .from(memberSub), "age")))
+                .from(member)
+                .fetch();
+        assertThat(fields).extracting("age").containsOnly(40);
+        assertThat(fields).containsExactlyInAnyOrderElementsOf(queryFactory
+                .select(Projections.fields(UserDto.class, member.username.as("name")
+                        , ExpressionUtils.as(JPAExpressions
+                                .select(memberSub.age.max())
+                                .from(memberSub), "age")))
+                .from(member)
+                .fetch());
+
+        List<UserDto> constructor = queryFactory
+                .select(UserDtoMapper.constructor(member.username, member.age))
+                .from(member)
+                .fetch();
+        assertThat(constructor).containsExactlyInAnyOrderElementsOf(queryFactory
+                .select(Projections.constructor(UserDto.class, member.username, member.age))
+                .from(member)
+                .fetch());
+
+        // 결과가 없는 서브쿼리는 null이다. 생성자의 int 파라미터에는 Projections.constructor처럼 0이 들어간다.
+        List<UserDto> nullAge = queryFactory
+                .select(UserDtoMapper.constructor(member.username, JPAExpressions
+                        .select(memberSub.age.max())
+                        .from(memberSub)
+                        .where(memberSub.username.eq("nobody"))))
+                .from(member)
+                .fetch();
+        assertThat(nullAge).extracting("age").containsOnly(0);
+        assertThat(nullAge).containsExactlyInAnyOrderElementsOf(queryFactory
+                .select(Projections.constructor(UserDto.class, member.username, JPAExpressions
+                        .select(memberSub.age.max())
+                        .from(memberSub)
+                        .where(memberSub.username.eq("nobody"))))
+                .from(member)
+                .fetch());
+    }
+
     /**
      * 동적 쿼리 - BooleanBuilder 사용
      */
@@ -0,0 +1,77 @@
+package study.querydsl.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * id 블록 크기에 따른 insert 처리량 비교
+ * 블록 크기 1 = 변경 전 (insert마다 시퀀스 호출)
+ * 블록 크기 1000 = pooled-lo (1000건당 시퀀스 호출 1번)
+ * 블록 크기는 SessionFactory 생성 시점에 정해지므로 설정별로 컨텍스트를 따로 띄운다.
+ * ./gradlew benchmark --tests "*IdAllocationBenchmarkTest*"
+ */
+public class IdAllocationBenchmarkTest {
+
+    private static final int MEMBER_COUNT = 200_000;
+    private static final int CHUNK_SIZE = 1_000;
+
+    @Tag("benchmark")
+    @SpringBootTest(properties = {
+            "spring.jpa.properties.study.id.block-size=1",
+            "logging.level.org.hibernate.SQL=warn",
+            "logging.level.org.hibernate.type=warn"
+    })
+    @Transactional
+    static class SequencePerInsert extends InsertThroughput {
+    }
+
+    @Tag("benchmark")
+    @SpringBootTest(properties = {
+            "spring.jpa.properties.study.id.block-size=1000",
+            "logging.level.org.hibernate.SQL=warn",
+            "logging.level.org.hibernate.type=warn"
+    })
+    @Transactional
+    static class PooledLo extends InsertThroughput {
+    }
+
+    abstract static class InsertThroughput {
+
+        @Autowired
+        EntityManager em;
+
+        @Autowired
+        MemberJpaRepository memberJpaRepository;
+
+        @Test
+        public void insertThroughput() throws Exception {
+            Team team = new Team("teamA");
+            em.persist(team);
+            em.flush();
+
+            List<Member> members = new ArrayList<>(MEMBER_COUNT);
+            for (int i = 0; i < MEMBER_COUNT; i++) {
+                Member member = new Member("member" + i, i % 100);
+                member.setTeam(team);
+                members.add(member);
+            }
+
+            long start = System.nanoTime();
+            memberJpaRepository.saveAll(members, CHUNK_SIZE);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf("%s : %,d members in %,d ms (%,.0f rows/s)%n", getClass().getSimpleName(),
+                    MEMBER_COUNT, elapsedMillis, MEMBER_COUNT * 1000.0 / Math.max(elapsedMillis, 1));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package study.querydsl.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 회원 100만명 대량 저장 (saveAll + JDBC 배치 insert)
+ * 회원은 Iterator로 하나씩 만들어서 넘기므로 100만개를 한번에 메모리에 올리지 않는다.
+ * SQL 로그를 찍으면 로그 출력 시간이 대부분이 되므로 끄고 측정한다.
+ * ./gradlew benchmark --tests "*MemberBulkInsertBenchmarkTest"
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "logging.level.org.hibernate.SQL=warn",
+        "logging.level.org.hibernate.type=warn"
+})
+@Transactional
+public class MemberBulkInsertBenchmarkTest {
+
+    private static final int MEMBER_COUNT = 1_000_000;
+    private static final int TEAM_COUNT = 10;
+    private static final int CHUNK_SIZE = 1_000;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Test
+    public void saveAllMillionMembers() throws Exception {
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < TEAM_COUNT; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            teams.add(team);
+        }
+        em.flush();
+
+        long start = System.nanoTime();
+        long saved = memberJpaRepository.saveAll(() -> members(teams), CHUNK_SIZE);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("saved %,d members in %,d ms (%,.0f rows/s)%n",
+                saved, elapsedMillis, saved * 1000.0 / Math.max(elapsedMillis, 1));
+
+        Long count = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+        assertThat(count).isEqualTo(MEMBER_COUNT);
+    }
+
+    private Iterator<Member> members(List<Team> teams) {
+        return new Iterator<Member>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < MEMBER_COUNT;
+            }
+
+            @Override
+            public Member next() {
+                // 생성자로 팀을 넣으면 team.members에 100만개가 쌓이므로 연관관계 주인 쪽만 설정한다.
+                Member member = new Member("member" + i, i % 100);
+                member.setTeam(teams.get(i % TEAM_COUNT));
+                i++;
+                return member;
+            }
+        };
+    }
+}
@@ -0,0 +1,136 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.ReadOnlyQueries;
+
+import javax.persistence.EntityManager;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 큰 엔티티 페이지(selectFrom(member) 1만 건) 조회 : 기본 vs read-only 힌트
+ * 페이지 하나를 조회하고 flush(변경 감지)까지 하는 동안의 CPU 시간, 할당량과
+ * 조회가 끝난 뒤 영속성 컨텍스트가 붙잡고 있는 힙(스냅샷 포함)을 비교한다.
+ * ./gradlew benchmark --tests "*ReadOnlyQueryBenchmarkTest"
+ */
+@Tag("benchmark")
+@SpringBootTest
+@Transactional
+public class ReadOnlyQueryBenchmarkTest {
+
+    private static final int MEMBERS = 50_000;
+    private static final int PAGE_SIZE = 10_000;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 20;
+
+    @Autowired
+    EntityManager em;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < MEMBERS; i++) {
+            em.persist(new Member("member" + i, i % 100, teamA));
+            if (i % 1000 == 0) {
+                em.flush();
+                em.clear();
+                teamA = em.getReference(Team.class, teamA.getId());
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void largeEntityPage() throws Exception {
+        Result normal = measure(new JPAQueryFactory(em));
+        // 힌트는 조회 전용 트랜잭션에서만 붙으므로 측정하는 동안 현재(테스트) 트랜잭션을 조회 전용으로 표시한다.
+        Result readOnly;
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            readOnly = measure(ReadOnlyQueries.queryFactory(em, null));
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+
+        System.out.printf("default   : %,.0f us cpu/page, %,.0f KB allocated/page, %,.0f KB retained%n",
+                normal.cpuMicros, normal.allocatedKb, normal.retainedKb);
+        System.out.printf("read-only : %,.0f us cpu/page, %,.0f KB allocated/page, %,.0f KB retained%n",
+                readOnly.cpuMicros, readOnly.allocatedKb, readOnly.retainedKb);
+        System.out.printf("saved     : %.1f%% cpu, %.1f%% allocated, %.1f%% retained%n",
+                (normal.cpuMicros - readOnly.cpuMicros) * 100 / normal.cpuMicros,
+                (normal.allocatedKb - readOnly.allocatedKb) * 100 / normal.allocatedKb,
+                (normal.retainedKb - readOnly.retainedKb) * 100 / normal.retainedKb);
+    }
+
+    private Result measure(JPAQueryFactory queryFactory) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP; i++) {
+            loadPage(queryFactory);
+            em.clear();
+        }
+
+        long cpu = 0;
+        long allocated = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long cpuStart = threadMXBean.getCurrentThreadCpuTime();
+            long allocatedStart = threadMXBean.getThreadAllocatedBytes(threadId);
+            loadPage(queryFactory);
+            em.flush();     // 기본 모드는 여기서 1만 개 엔티티를 스냅샷과 비교한다.
+            cpu += threadMXBean.getCurrentThreadCpuTime() - cpuStart;
+            allocated += threadMXBean.getThreadAllocatedBytes(threadId) - allocatedStart;
+            em.clear();
+        }
+
+        // 페이지를 영속성 컨텍스트에 올려둔 상태와 비운 상태의 힙 차이 (엔티티는 영속성 컨텍스트가 붙잡고 있다)
+        long before = usedHeapAfterGc();
+        loadPage(queryFactory);
+        long retained = usedHeapAfterGc() - before;
+        em.clear();
+
+        return new Result((double) cpu / ITERATIONS / 1_000, (double) allocated / ITERATIONS / 1024,
+                (double) retained / 1024);
+    }
+
+    private List<Member> loadPage(JPAQueryFactory queryFactory) {
+        return queryFactory
+                .selectFrom(member)
+                .orderBy(member.id.asc())
+                .offset(0)
+                .limit(PAGE_SIZE)
+                .fetch();
+    }
+
+    private long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static class Result {
+        private final double cpuMicros;
+        private final double allocatedKb;
+        private final double retainedKb;
+
+        Result(double cpuMicros, double allocatedKb, double retainedKb) {
+            this.cpuMicros = cpuMicros;
+            this.allocatedKb = allocatedKb;
+            this.retainedKb = retainedKb;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.TeamNameCache;
+
+import javax.persistence.EntityManager;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 동적 쿼리(요청마다 BooleanExpression 생성 + JPQL 직렬화) vs 모양별 템플릿 캐시(searchByWhere, searchByBuilder) 요청당 CPU 시간 비교
+ * 동적 쿼리는 템플릿을 적용하기 전의 searchByWhere 쿼리를 그대로 옮겨둔 것이다.
+ * DB 대기 시간은 CPU 시간에 포함되지 않으므로, 쿼리 생성/직렬화/파싱에 쓰인 애플리케이션 CPU를 비교할 수 있다.
+ * ./gradlew benchmark --tests "*SearchQueryTemplateBenchmarkTest"
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "querydsl.cache.search.enabled=false")    // 결과 캐시를 끄고 쿼리 생성 비용만 비교
+@Transactional
+public class SearchQueryTemplateBenchmarkTest {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    TeamNameCache teamNameCache;
+
+    JPAQueryFactory queryFactory;
+    List<MemberSearchCondition> conditions;
+
+    @BeforeEach
+    public void before(){
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 100; i++) {
+            em.persist(new Member("member" + i, i, i % 2 == 0 ? teamA : teamB));
+        }
+        em.flush();
+        em.clear();
+
+        // 16가지 모양을 모두 돌아가며 사용한다.
+        conditions = new ArrayList<>();
+        for (int shape = 0; shape < 16; shape++) {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            if ((shape & 1) != 0) condition.setUsername("member10");
+            if ((shape & 2) != 0) condition.setTeamName("teamA");
+            if ((shape & 4) != 0) condition.setAgeGoe(5);
+            if ((shape & 8) != 0) condition.setAgeLoe(50);
+            conditions.add(condition);
+        }
+    }
+
+    @Test
+    public void cpuPerRequest() throws Exception {
+        double dynamic = measure(this::searchDynamic);
+        double byWhere = measure(memberJpaRepository::searchByWhere);
+        double byBuilder = measure(memberJpaRepository::searchByBuilder);
+
+        System.out.printf("dynamic query    : %,.0f ns cpu/request%n", dynamic);
+        System.out.printf("searchByWhere    : %,.0f ns cpu/request (saved %.1f%%)%n",
+                byWhere, (dynamic - byWhere) * 100 / dynamic);
+        System.out.printf("searchByBuilder  : %,.0f ns cpu/request (saved %.1f%%)%n",
+                byBuilder, (dynamic - byBuilder) * 100 / dynamic);
+    }
+
+    // 템플릿 적용 전 searchByWhere
+    private List<MemberTeamDto> searchDynamic(MemberSearchCondition condition) {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId")
+                        , member.username
+                        , member.age
+                        , team.id.as("teamId")
+                        , team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        StringUtils.hasText(condition.getUsername()) ? member.username.eq(condition.getUsername()) : null
+                        , StringUtils.hasText(condition.getTeamName()) ? teamNameCache.teamNameEq(condition.getTeamName()) : null
+                        , condition.getAgeGoe() != null ? member.age.goe(condition.getAgeGoe()) : null
+                        , condition.getAgeLoe() != null ? member.age.loe(condition.getAgeLoe()) : null
+                )
+                .fetch();
+    }
+
+    private double measure(Consumer<MemberSearchCondition> search) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            search.accept(conditions.get(i % conditions.size()));
+            em.clear();
+        }
+        long start = threadMXBean.getCurrentThreadCpuTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            search.accept(conditions.get(i % conditions.size()));
+            em.clear();
+        }
+        return (double) (threadMXBean.getCurrentThreadCpuTime() - start) / ITERATIONS;
+    }
+}
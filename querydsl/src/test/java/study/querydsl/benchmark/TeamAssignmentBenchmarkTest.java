@@ -0,0 +1,74 @@
+package study.querydsl.benchmark;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * 회원 10만명을 이미 저장된 팀 하나에 배정 (1000명마다 flush + clear 하고 팀을 다시 조회)
+ *   changeTeam : 로딩하지 않은 Team.members는 건드리지 않는다.
+ *   initialized : 배정할 때마다 Team.members를 로딩하는 경우 (이전 방식에서 컬렉션이 초기화되는 경우)
+ *                 청크마다 지금까지 배정한 회원을 모두 다시 읽어오므로 전체 비용이 회원 수의 제곱에 비례한다.
+ * ./gradlew benchmark --tests "*TeamAssignmentBenchmarkTest"
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "querydsl.sql-log.sample-rate=0")  // 느린 SQL만 로그로 남긴다.
+@Transactional
+public class TeamAssignmentBenchmarkTest {
+
+    private static final int MEMBER_COUNT = 100_000;
+    private static final int CHUNK_SIZE = 1_000;
+
+    @Autowired
+    EntityManager em;
+
+    @Test
+    public void assignMembersWithChangeTeam() throws Exception {
+        long elapsedMillis = assign("changeTeam", false);
+
+        Long count = em.createQuery("select count(m) from Member m where m.team.name = 'changeTeam'", Long.class)
+                .getSingleResult();
+        assertThat(count).isEqualTo(MEMBER_COUNT);
+        System.out.printf("changeTeam  : %,d members in %,d ms%n", MEMBER_COUNT, elapsedMillis);
+    }
+
+    @Test
+    public void assignMembersWithInitializedCollection() throws Exception {
+        long elapsedMillis = assign("initialized", true);
+        System.out.printf("initialized : %,d members in %,d ms%n", MEMBER_COUNT, elapsedMillis);
+    }
+
+    private long assign(String teamName, boolean initializeMembers) {
+        Team team = new Team(teamName);
+        em.persist(team);
+        em.flush();
+        em.clear();
+        Long teamId = team.getId();
+
+        long start = System.nanoTime();
+        team = em.find(Team.class, teamId);
+        for (int i = 0; i < MEMBER_COUNT; i++) {
+            if (initializeMembers) {
+                Hibernate.initialize(team.getMembers());
+            }
+            em.persist(new Member("member" + i, i % 100, team));
+            if ((i + 1) % CHUNK_SIZE == 0) {
+                em.flush();
+                em.clear();
+                team = em.find(Team.class, teamId);
+            }
+        }
+        em.flush();
+        em.clear();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
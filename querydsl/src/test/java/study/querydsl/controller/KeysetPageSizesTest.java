@@ -0,0 +1,23 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.data.web.SpringDataWebProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeysetPageSizesTest {
+
+    @Test
+    public void boundLikePageable() throws Exception {
+        SpringDataWebProperties properties = new SpringDataWebProperties();
+        properties.getPageable().setDefaultPageSize(20);
+        properties.getPageable().setMaxPageSize(2000);
+        KeysetPageSizes sizes = new KeysetPageSizes(properties);
+
+        assertThat(sizes.bound(50)).isEqualTo(50);
+        assertThat(sizes.bound(0)).isEqualTo(20);
+        assertThat(sizes.bound(-1)).isEqualTo(20);
+        assertThat(sizes.bound(5000)).isEqualTo(2000);
+        assertThat(sizes.bound(Integer.MAX_VALUE)).isEqualTo(2000);
+    }
+}
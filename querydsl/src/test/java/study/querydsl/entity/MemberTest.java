@@ -1,5 +1,6 @@
 package study.querydsl.entity;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -50,4 +51,86 @@ class MemberTest {
         }
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void changeTeamDoesNotLoadMembers() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        // 새로 만든 팀은 바로 반영된다.
+        assertTrue(teamA.getMembers().contains(member1));
+
+        em.flush();
+        em.clear();
+
+        Team findTeamA = em.find(Team.class, teamA.getId());
+        Team findTeamB = em.find(Team.class, teamB.getId());
+        Hibernate.initialize(findTeamB.getMembers());
+        Member member2 = new Member("member2", 20, findTeamA);
+        em.persist(member2);
+
+        // 로딩하지 않은 컬렉션은 건드리지 않는다.
+        assertFalse(Hibernate.isInitialized(findTeamA.getMembers()));
+
+        // 로딩된 컬렉션 사이에서 옮기면 양쪽이 맞춰진다.
+        Member findMember1 = em.find(Member.class, member1.getId());
+        findMember1.changeTeam(findTeamB);
+        assertTrue(findTeamB.getMembers().contains(findMember1));
+        assertFalse(Hibernate.isInitialized(findTeamA.getMembers()));
+
+        em.flush();
+        em.clear();
+
+        assertEquals(1, em.find(Team.class, teamA.getId()).getMembers().size());
+        assertEquals(1, em.find(Team.class, teamB.getId()).getMembers().size());
+    }
+
+    @Test
+    public void addedMemberVisibleWhenInitializedBeforeFlush() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.flush();
+        em.clear();
+
+        Team findTeamA = em.find(Team.class, teamA.getId());
+        Member member2 = new Member("member2", 20, findTeamA);
+        em.persist(member2);
+        assertFalse(Hibernate.isInitialized(findTeamA.getMembers()));
+
+        // flush 전에 로딩해도 예약해둔 회원이 함께 들어있다. (중복 없이)
+        Hibernate.initialize(findTeamA.getMembers());
+        assertEquals(2, findTeamA.getMembers().size());
+        assertTrue(findTeamA.getMembers().contains(member2));
+
+        em.flush();
+        em.clear();
+
+        assertEquals(2, em.find(Team.class, teamA.getId()).getMembers().size());
+    }
+
+    @Test
+    public void changeTeamToProxy() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.flush();
+        em.clear();
+
+        Team proxy = em.getReference(Team.class, teamA.getId());
+        assertFalse(Hibernate.isInitialized(proxy));
+        Member member2 = new Member("member2", 20, proxy);
+        em.persist(member2);
+
+        // 프록시여도 반대편에 추가된다. members 컬렉션은 여전히 로딩하지 않는다.
+        assertFalse(Hibernate.isInitialized(proxy.getMembers()));
+
+        // flush 전에 로딩해도 새 회원이 빠지지 않는다.
+        Hibernate.initialize(proxy.getMembers());
+        assertEquals(2, proxy.getMembers().size());
+        assertTrue(proxy.getMembers().contains(member2));
+    }
+}
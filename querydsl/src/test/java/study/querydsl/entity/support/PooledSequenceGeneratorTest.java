@@ -0,0 +1,86 @@
+package study.querydsl.entity.support;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+class PooledSequenceGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 2_500;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Test
+    public void separateSequencePerEntity() throws Exception {
+        IdentifierGenerator memberGenerator = generatorOf(Member.class);
+        IdentifierGenerator teamGenerator = generatorOf(Team.class);
+
+        assertThat(memberGenerator).isInstanceOf(PooledSequenceGenerator.class);
+        assertThat(((PooledSequenceGenerator) memberGenerator).getDatabaseStructure().getName()).isEqualTo("member_seq");
+        assertThat(((PooledSequenceGenerator) teamGenerator).getDatabaseStructure().getName()).isEqualTo("team_seq");
+        assertThat(((PooledSequenceGenerator) memberGenerator).getOptimizer().getIncrementSize())
+                .isEqualTo(PooledSequenceGenerator.DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * 여러 스레드가 동시에 id를 받아가도 겹치지 않아야 한다. (블록 경계를 여러번 넘도록 블록 크기보다 많이 생성)
+     */
+    @Test
+    public void concurrentAllocation() throws Exception {
+        IdentifierGenerator generator = generatorOf(Member.class);
+        Set<Serializable> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    try (Session session = emf.unwrap(SessionFactoryImplementor.class).openSession()) {
+                        start.await();
+                        for (int i = 0; i < IDS_PER_THREAD; i++) {
+                            ids.add(generator.generate((SharedSessionContractImplementor) session, null));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(ids).hasSize(THREADS * IDS_PER_THREAD);
+    }
+
+    private IdentifierGenerator generatorOf(Class<?> entityClass) {
+        return emf.unwrap(SessionFactoryImplementor.class).getMetamodel()
+                .entityPersister(entityClass)
+                .getIdentifierGenerator();
+    }
+}
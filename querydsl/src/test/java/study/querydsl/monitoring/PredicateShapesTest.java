@@ -0,0 +1,43 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.core.types.ExpressionUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+class PredicateShapesTest {
+
+    @Test
+    public void sameShapeForDifferentValues() throws Exception {
+        String shape = PredicateShapes.of(member.username.eq("member1").and(member.age.goe(10)));
+
+        assertThat(shape).isEqualTo("member1.username = ?1 and member1.age >= ?2");
+        assertThat(PredicateShapes.of(member.username.eq("member2").and(member.age.goe(20)))).isSameAs(shape);
+    }
+
+    @Test
+    public void differentStructures() throws Exception {
+        // 이름이 같은 속성이라도 부모 경로가 다르면 다른 모양이다.
+        assertThat(PredicateShapes.of(member.id.eq(1L))).isEqualTo("member1.id = ?1");
+        assertThat(PredicateShapes.of(team.id.eq(1L))).isEqualTo("team.id = ?1");
+        assertThat(PredicateShapes.of(member.team.id.eq(1L))).isEqualTo("member1.team.id = ?1");
+
+        assertThat(PredicateShapes.of(member.age.goe(10))).isNotEqualTo(PredicateShapes.of(member.age.loe(10)));
+        assertThat(PredicateShapes.of(ExpressionUtils.allOf(member.age.goe(10), null))).isEqualTo("member1.age >= ?1");
+        assertThat(PredicateShapes.of(null)).isEqualTo(PredicateShapes.NONE);
+    }
+
+    @Test
+    public void emptyCollectionIsDifferentShape() throws Exception {
+        String notEmpty = PredicateShapes.of(member.id.in(Arrays.asList(1L, 2L)));
+        String empty = PredicateShapes.of(member.id.in(Collections.<Long>emptyList()));
+
+        assertThat(PredicateShapes.of(member.id.in(Arrays.asList(3L, 4L, 5L)))).isEqualTo(notEmpty);
+        assertThat(empty).isNotEqualTo(notEmpty);
+    }
+}
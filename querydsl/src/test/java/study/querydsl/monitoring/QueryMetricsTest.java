@@ -0,0 +1,74 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+class QueryMetricsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    QueryMetrics queryMetrics;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+    }
+
+    @Test
+    public void recordByRepositoryMethodAndShape() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(50);
+        memberJpaRepository.searchByWhere(condition);
+
+        // 값(teamA의 id, 50)은 파라미터로 바뀐다. 팀 이름은 TeamNameCache에서 id로 바뀐다.
+        String shape = "member1.team.id = ?1 and member1.age >= ?2";
+        List<QueryMetrics.QueryStats> stats = queryMetrics.snapshot().stream()
+                .filter(stat -> stat.getMethod().equals("MemberJpaRepository.searchByWhere"))
+                .filter(stat -> stat.getShape().equals(shape))
+                .collect(Collectors.toList());
+
+        assertThat(stats).hasSize(1);
+        QueryMetrics.QueryStats stat = stats.get(0);
+        assertThat(stat.getOperation()).isEqualTo("fetch");
+        assertThat(stat.getCount()).isGreaterThanOrEqualTo(1);
+
+        Timer timer = meterRegistry.find("querydsl.query")
+                .tags("method", "MemberJpaRepository.searchByWhere", "shape", shape)
+                .timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.takeSnapshot().percentileValues()).hasSize(3);
+        assertThat(meterRegistry.find("querydsl.query.rows")
+                .tags("method", "MemberJpaRepository.searchByWhere", "shape", shape)
+                .summary().max()).isEqualTo(5);
+    }
+}
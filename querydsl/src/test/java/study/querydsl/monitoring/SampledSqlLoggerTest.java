@@ -0,0 +1,164 @@
+package study.querydsl.monitoring;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SampledSqlLoggerTest {
+
+    private static final long SLOW_THRESHOLD_MILLIS = 100;
+
+    Logger sqlLog = (Logger) LoggerFactory.getLogger("study.querydsl.sql");
+    CapturingAppender appender = new CapturingAppender();
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    SampledSqlLogger logger;
+
+    @BeforeEach
+    public void before(){
+        sqlLog.setLevel(Level.INFO);
+        appender.start();
+        sqlLog.addAppender(appender);
+    }
+
+    @AfterEach
+    public void after() throws Exception {
+        appender.release();
+        if (logger != null) {
+            logger.destroy();
+        }
+        sqlLog.detachAppender(appender);
+    }
+
+    @Test
+    public void sampleRateZeroLogsOnlySlowAndFailed() throws Exception {
+        logger = new SampledSqlLogger(0, SLOW_THRESHOLD_MILLIS, 100, meterRegistry);
+
+        execute("select fast", 1, true);
+        execute("select slow", SLOW_THRESHOLD_MILLIS, true);
+        execute("select failed", 1, false);
+        logger.destroy();
+
+        assertThat(appender.messages()).hasSize(2);
+        assertThat(appender.events).extracting(ILoggingEvent::getLevel).containsOnly(Level.WARN);
+        assertThat(appender.messages().get(0)).startsWith("slow").contains("select slow");
+        assertThat(appender.messages().get(1)).startsWith("failed").contains("select failed");
+    }
+
+    @Test
+    public void sampleRateOneLogsEverything() throws Exception {
+        logger = new SampledSqlLogger(1, SLOW_THRESHOLD_MILLIS, 100, meterRegistry);
+
+        for (int i = 0; i < 10; i++) {
+            execute("select " + i, 1, true);
+        }
+        logger.destroy();
+
+        assertThat(appender.messages()).hasSize(10);
+        assertThat(appender.events).extracting(ILoggingEvent::getLevel).containsOnly(Level.INFO);
+    }
+
+    @Test
+    public void dropWhenBufferFull() throws Exception {
+        logger = new SampledSqlLogger(1, SLOW_THRESHOLD_MILLIS, 1, meterRegistry);
+        appender.block();
+
+        execute("select 1", 1, true);
+        appender.awaitBlocked();     // writer 스레드가 첫번째 로그를 출력하다 멈춰있다.
+        execute("select 2", 1, true);     // 버퍼(크기 1)에 들어간다.
+        execute("select 3", 1, true);     // 버려진다.
+        execute("select 4", 1, true);     // 버려진다.
+
+        assertThat(meterRegistry.get("sql.log.dropped").counter().count()).isEqualTo(2);
+
+        appender.release();
+        logger.destroy();
+        assertThat(appender.messages()).filteredOn(message -> message.contains("select"))
+                .hasSize(2);
+        assertThat(appender.messages()).anyMatch(message -> message.equals("2 SQL log entries dropped (buffer full)"));
+    }
+
+    @Test
+    public void destroyDrainsBuffer() throws Exception {
+        logger = new SampledSqlLogger(1, SLOW_THRESHOLD_MILLIS, 100, meterRegistry);
+        appender.block();
+
+        execute("select 0", 1, true);
+        appender.awaitBlocked();
+        for (int i = 1; i < 5; i++) {
+            execute("select " + i, 1, true);
+        }
+
+        appender.release();
+        logger.destroy();
+
+        // 버퍼에 남아있던 로그도 모두 출력된다.
+        assertThat(appender.messages()).hasSize(5);
+    }
+
+    private void execute(String sql, long elapsedMillis, boolean success) {
+        ExecutionInfo execInfo = new ExecutionInfo();
+        execInfo.setElapsedTime(elapsedMillis);
+        execInfo.setSuccess(success);
+        logger.afterQuery(execInfo, Collections.singletonList(new QueryInfo(sql)));
+    }
+
+    /**
+     * 받은 로그를 모아둔다. block()하면 release()할 때까지 로그 출력(writer 스레드)을 멈춘다.
+     */
+    private static class CapturingAppender extends AppenderBase<ILoggingEvent> {
+
+        private final List<ILoggingEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+
+        void release() {
+            if (gate != null) {
+                gate.countDown();
+            }
+        }
+
+        List<String> messages() {
+            List<String> messages = new CopyOnWriteArrayList<>();
+            events.forEach(event -> messages.add(event.getFormattedMessage()));
+            return messages;
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            events.add(event);
+            CountDownLatch current = gate;
+            if (current != null) {
+                blocked.countDown();
+                try {
+                    current.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
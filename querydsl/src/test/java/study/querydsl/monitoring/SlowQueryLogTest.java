@@ -0,0 +1,117 @@
+package study.querydsl.monitoring;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+// threshold 0 : 모든 쿼리를 느린 쿼리로 본다. (검색 결과 캐시는 끈다, 실행 계획과 바인딩 값은 local 프로필처럼 켠다)
+@SpringBootTest(properties = {"querydsl.slow-query.threshold-millis=0", "querydsl.cache.search.enabled=false",
+        "querydsl.slow-query.explain=true", "querydsl.slow-query.show-bindings=true"})
+@Transactional
+class SlowQueryLogTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    SlowQueryLog slowQueryLog;
+
+    Team teamA;
+
+    @BeforeEach
+    public void before(){
+        slowQueryLog.clear();
+        teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        // 쿼리 실행 전 자동 flush의 insert가 같이 수집되지 않도록 미리 flush
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void captureSqlAndPlanByShape() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(50);
+        memberJpaRepository.searchByWhere(condition);
+
+        // 팀 이름은 TeamNameCache에서 id로 바뀐다.
+        List<SlowQueryLog.SlowQuery> slowQueries = slowQueryLog.snapshot().get("member1.team.id = ?1 and member1.age >= ?2");
+        assertThat(slowQueries).hasSize(1);
+
+        SlowQueryLog.SlowQuery slowQuery = slowQueries.get(0);
+        assertThat(slowQuery.getMethod()).isEqualTo("MemberJpaRepository.searchByWhere");
+        assertThat(slowQuery.getOperation()).isEqualTo("fetch");
+        assertThat(slowQuery.getStatements()).hasSize(1);
+        assertThat(slowQuery.getStatements().get(0).getSql()).containsIgnoringCase("from member");
+        assertThat(slowQuery.getStatements().get(0).getBindings()).containsExactly(String.valueOf(teamA.getId()), "50");
+
+        // 실행 계획은 별도 스레드에서 채워진다.
+        for (int i = 0; i < 50 && slowQuery.getPlan() == null; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(slowQuery.getPlan())
+                .isNotNull()
+                .doesNotStartWith("EXPLAIN failed")
+                .containsIgnoringCase("select");
+    }
+
+    @Test
+    public void bindingsMaskedUnlessEnabled() throws Exception {
+        List<ParameterSetOperation> parameters = Arrays.asList(
+                new ParameterSetOperation(PreparedStatement.class.getMethod("setString", int.class, String.class),
+                        new Object[]{1, "member1"}),
+                new ParameterSetOperation(PreparedStatement.class.getMethod("setInt", int.class, int.class),
+                        new Object[]{2, 10}));
+
+        assertThat(new SlowQueryLog.Statement("select ...", parameters, 1, false).getBindings())
+                .containsExactly(SlowQueryLog.Statement.MASKED, SlowQueryLog.Statement.MASKED);
+        assertThat(new SlowQueryLog.Statement("select ...", parameters, 1, true).getBindings())
+                .containsExactly("member1", "10");
+    }
+
+    @Test
+    public void snapshotDoesNotReorderShapes() throws Exception {
+        SlowQueryLog log = new SlowQueryLog(null, 0, 2, 5, false, false);
+        try {
+            record(log, "shape1");
+            record(log, "shape2");
+            assertThat(log.snapshot().keySet()).containsExactly("shape2", "shape1");
+
+            // 조회한 뒤에도 가장 오래된 모양(shape1)이 먼저 밀려난다.
+            record(log, "shape3");
+            assertThat(log.snapshot().keySet()).containsExactly("shape3", "shape2");
+        } finally {
+            log.destroy();
+        }
+    }
+
+    private void record(SlowQueryLog log, String shape) {
+        SlowQueryLog.Capture capture = log.begin();
+        log.afterQuery(new ExecutionInfo(), Collections.singletonList(new QueryInfo("select 1")));
+        log.end(capture, "SlowQueryLogTest.record", "fetch", shape, 1);
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.monitoring;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 테스트 메서드 하나에서 실행할 수 있는 SQL 수를 제한한다.
+ * 예산을 넘거나, failOnRepeated인데 같은 SQL이 repeatThreshold번 이상 실행되면 테스트가 실패한다. (N+1 방지)
+ * 클래스에 붙이면 모든 테스트 메서드에 적용되고, 메서드에 붙인 설정이 우선한다.
+ *
+ * @StatementBudget(max = 2)
+ * @Test
+ * public void fetchJoin() { ... }
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(StatementBudgetExtension.class)
+public @interface StatementBudget {
+
+    /** 최대 SQL 수 */
+    int max() default Integer.MAX_VALUE;
+
+    /** 같은 SQL이 이 횟수 이상 실행되면 반복으로 본다. */
+    int repeatThreshold() default 3;
+
+    boolean failOnRepeated() default true;
+}
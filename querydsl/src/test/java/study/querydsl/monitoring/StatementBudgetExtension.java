@@ -0,0 +1,51 @@
+package study.querydsl.monitoring;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @StatementBudget 처리
+ * 테스트 메서드마다 StatementScope를 열고, 끝나면 실행된 SQL을 로그로 남기고 예산을 검사한다.
+ * 테스트 메서드 본문만 센다. (@BeforeEach에서 테스트 데이터를 저장하는 SQL은 포함하지 않는다.)
+ */
+public class StatementBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementBudgetExtension.class);
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(StatementBudgetExtension.class);
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        context.getStore(NAMESPACE).put(StatementScope.class, StatementRecorder.open());
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        StatementScope scope = context.getStore(NAMESPACE).remove(StatementScope.class, StatementScope.class);
+        if (scope == null) {
+            return;
+        }
+        scope.close();
+
+        StatementBudget budget = budgetOf(context);
+        log.info("{} : {}", context.getDisplayName(), scope.report(budget.repeatThreshold()));
+
+        if (scope.getStatementCount() > budget.max()) {
+            throw new AssertionError("statement budget exceeded : " + scope.getStatementCount() + " > " + budget.max()
+                    + System.lineSeparator() + scope.report(budget.repeatThreshold()));
+        }
+        if (budget.failOnRepeated() && !scope.getRepeatedStatements(budget.repeatThreshold()).isEmpty()) {
+            throw new AssertionError("repeated statements (N+1?) : "
+                    + System.lineSeparator() + scope.report(budget.repeatThreshold()));
+        }
+    }
+
+    private StatementBudget budgetOf(ExtensionContext context) {
+        return AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), StatementBudget.class)
+                .orElseGet(() -> AnnotationSupport.findAnnotation(context.getRequiredTestClass(), StatementBudget.class)
+                        .orElseThrow(() -> new IllegalStateException("@StatementBudget not found")));
+    }
+}
@@ -0,0 +1,77 @@
+package study.querydsl.monitoring;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+// N+1 탐지를 확인하기 위해 Team 프록시 일괄 로딩은 끈다.
+@SpringBootTest(properties = "querydsl.team-batch-loader.enabled=false")
+@Transactional
+class StatementRecorderTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before(){
+        for (int i = 0; i < 5; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            em.persist(new Member("member" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * 회원 5명을 조회한 뒤 팀 이름을 꺼내면 팀 조회 SQL이 회원 수만큼 반복된다.
+     */
+    @Test
+    public void detectNPlusOne() throws Exception {
+        try (StatementScope scope = StatementRecorder.open()) {
+            List<Member> members = memberJpaRepository.findAll_Querydsl();
+            for (Member m : members) {
+                m.getTeam().getName();
+            }
+
+            assertThat(scope.getStatementCount()).isEqualTo(6);
+            assertThat(scope.getEntityLoads()).containsEntry(Team.class.getName(), 5);
+
+            List<RepeatedStatement> repeated = scope.getRepeatedStatements(2);
+            assertThat(repeated).hasSize(1);
+            assertThat(repeated.get(0).getCount()).isEqualTo(5);
+            assertThat(repeated.get(0).getCallSite()).contains("StatementRecorderTest.detectNPlusOne");
+        }
+    }
+
+    /**
+     * fetch join으로 한번에 가져오면 SQL 1번으로 끝난다.
+     */
+    @StatementBudget(max = 1)
+    @Test
+    public void fetchJoinWithinBudget() throws Exception {
+        List<Member> members = new JPAQueryFactory(em)
+                .selectFrom(member)
+                .join(member.team, team).fetchJoin()
+                .fetch();
+        for (Member m : members) {
+            m.getTeam().getName();
+        }
+    }
+}
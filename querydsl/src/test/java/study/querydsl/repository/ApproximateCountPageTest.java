@@ -0,0 +1,114 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.EstimatedPage;
+import study.querydsl.repository.support.RowCountEstimator;
+
+import javax.persistence.EntityManager;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 통계 정보는 DB마다, ANALYZE 시점마다 다르므로 추정치는 RowCountEstimator를 대신해서 정해준다.
+ * 기준값(querydsl.paging.approximate-count.threshold)은 기본값 100000이다.
+ */
+@SpringBootTest
+@Transactional
+class ApproximateCountPageTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @MockBean
+    RowCountEstimator rowCountEstimator;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void estimatedAboveThreshold() throws Exception {
+        given(rowCountEstimator.estimate(Member.class)).willReturn(OptionalLong.of(500_000));
+
+        EstimatedPage<MemberTeamDto> page = search(new MemberSearchCondition(), PageRequest.of(0, 3));
+
+        assertThat(page.getContent()).hasSize(3);
+        assertThat(page.getTotalElements()).isEqualTo(500_000);
+        assertThat(page.isEstimated()).isTrue();
+    }
+
+    @Test
+    public void exactBelowThreshold() throws Exception {
+        given(rowCountEstimator.estimate(Member.class)).willReturn(OptionalLong.of(10));
+
+        EstimatedPage<MemberTeamDto> page = search(new MemberSearchCondition(), PageRequest.of(0, 3));
+
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.isEstimated()).isFalse();
+    }
+
+    @Test
+    public void exactWithoutStatistics() throws Exception {
+        given(rowCountEstimator.estimate(Member.class)).willReturn(OptionalLong.empty());
+
+        EstimatedPage<MemberTeamDto> page = search(new MemberSearchCondition(), PageRequest.of(0, 3));
+
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.isEstimated()).isFalse();
+    }
+
+    @Test
+    public void exactWithCondition() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+
+        EstimatedPage<MemberTeamDto> page = search(condition, PageRequest.of(0, 3));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.isEstimated()).isFalse();
+        verify(rowCountEstimator, never()).estimate(any());
+    }
+
+    @Test
+    public void exactOnLastPage() throws Exception {
+        // 마지막 페이지는 count 없이 offset + 컨텐츠 수로 total을 구한다.
+        EstimatedPage<MemberTeamDto> page = search(new MemberSearchCondition(), PageRequest.of(1, 3));
+
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.isEstimated()).isFalse();
+        verify(rowCountEstimator, never()).estimate(any());
+    }
+
+    private EstimatedPage<MemberTeamDto> search(MemberSearchCondition condition, PageRequest pageable) {
+        Page<MemberTeamDto> page = memberRepository.searchByWherePageApproximate(condition, pageable);
+        assertThat(page).isInstanceOf(EstimatedPage.class);
+        return (EstimatedPage<MemberTeamDto>) page;
+    }
+}
@@ -0,0 +1,153 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.QueryCacheInvalidator;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 캐시는 커밋된 데이터만 담아야 하므로 @Transactional(롤백)을 사용하지 않고 직접 정리한다.
+ */
+@SpringBootTest(properties = "querydsl.cache.count.ttl-seconds=1")
+class MemberCountCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberCountCache countCache;
+
+    TransactionTemplate tx;
+    AtomicInteger counted = new AtomicInteger();
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        countCache.invalidateAll();
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> em.createQuery("delete from Team").executeUpdate());
+    }
+
+    @Test
+    public void sameKeyAfterNormalization() throws Exception {
+        MemberSearchCondition blank = new MemberSearchCondition();
+        blank.setUsername("");
+        blank.setTeamName(" ");
+        blank.setAgeGoe(20);
+        MemberSearchCondition empty = new MemberSearchCondition();
+        empty.setAgeGoe(20);
+
+        assertThat(count(blank)).isEqualTo(1);
+        assertThat(count(empty)).isEqualTo(1);
+        assertThat(counted.get()).isEqualTo(1);
+
+        // 조건이 다르면 다른 키
+        empty.setAgeGoe(30);
+        assertThat(count(empty)).isEqualTo(2);
+    }
+
+    @Test
+    public void expiresAfterTtl() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        count(condition);
+        count(condition);
+        assertThat(counted.get()).isEqualTo(1);
+
+        Thread.sleep(1100);
+        count(condition);
+        assertThat(counted.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidatedAfterWrite() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        count(condition);
+        tx.executeWithoutResult(status -> em.persist(new Team("teamA")));
+        count(condition);
+        assertThat(counted.get()).isEqualTo(2);
+
+        // 롤백해도 비운다.
+        tx.executeWithoutResult(status -> {
+            em.persist(new Team("teamB"));
+            status.setRollbackOnly();
+        });
+        count(condition);
+        assertThat(counted.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void bypassedInReadWriteTransaction() throws Exception {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        count(condition);
+        // 조회 전용 트랜잭션에서는 캐시를 사용한다.
+        readOnly.executeWithoutResult(status -> count(condition));
+        assertThat(counted.get()).isEqualTo(1);
+
+        // 읽기/쓰기 트랜잭션에서는 아직 flush 하지 않은 변경이 있을 수 있으므로 변경 전이라도 매번 센다.
+        tx.executeWithoutResult(status -> {
+            assertThat(QueryCacheInvalidator.hasPendingWrites()).isFalse();
+            count(condition);
+            count(condition);
+        });
+        assertThat(counted.get()).isEqualTo(3);
+
+        // 캐시에 담긴 값은 그대로다.
+        count(condition);
+        assertThat(counted.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void nestedRequiresNewTransaction() throws Exception {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        tx.executeWithoutResult(status -> {
+            em.persist(new Team("teamA"));
+            assertThat(QueryCacheInvalidator.hasPendingWrites()).isTrue();
+
+            requiresNew.executeWithoutResult(inner -> {
+                // 안쪽 트랜잭션은 따로 변경 여부를 관리한다.
+                assertThat(QueryCacheInvalidator.hasPendingWrites()).isFalse();
+                em.persist(new Team("teamB"));
+                em.flush();
+                assertThat(QueryCacheInvalidator.hasPendingWrites()).isTrue();
+            });
+            count(condition);
+
+            assertThat(QueryCacheInvalidator.hasPendingWrites()).isTrue();
+        });
+        assertThat(QueryCacheInvalidator.hasPendingWrites()).isFalse();
+
+        // 바깥 트랜잭션이 끝날 때도 비운다.
+        count(condition);
+        assertThat(counted.get()).isEqualTo(2);
+    }
+
+    private long count(MemberSearchCondition condition) {
+        return countCache.get(condition, counted::incrementAndGet);
+    }
+}
@@ -12,6 +12,7 @@ import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,6 +44,25 @@ class MemberJpaRepositoryTest {
         assertThat(result2).containsExactly(member);
     }
 
+    @Test
+    public void saveAllTest() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            members.add(new Member("member" + i, i, teamA));
+        }
+
+        // 10개씩 끊어서 flush + clear
+        long saved = memberJpaRepository.saveAll(members, 10);
+
+        assertThat(saved).isEqualTo(25);
+        assertThat(em.contains(members.get(0))).isFalse();
+        assertThat(memberJpaRepository.findAll()).hasSize(25);
+        assertThat(memberJpaRepository.findById(members.get(24).getId()).get().getTeam().getName()).isEqualTo("teamA");
+    }
+
     @Test
     public void basicQuerydslTest() throws Exception {
         Member member = new Member("member1", 10);
@@ -114,4 +134,45 @@ class MemberJpaRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member4");
     }
 
-}
\ No newline at end of file
+    /**
+     *  동적 쿼리 - 모양별 템플릿 캐시
+     *  searchByWhere, searchByBuilder는 조건 모양별로 직렬화해둔 JPQL을 재사용한다.
+     */
+    @Test
+    public void searchTestTemplate() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(35);
+        condition.setAgeLoe(40);
+        condition.setTeamName("teamB");
+
+        List<MemberTeamDto> result = memberJpaRepository.searchByWhere(condition);
+        assertThat(result).extracting("username").containsExactly("member4");
+        assertThat(result).containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(condition));
+
+        // 같은 모양, 다른 값 -> 캐시된 템플릿에 값만 바꿔서 바인딩
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(0);
+        assertThat(memberJpaRepository.searchByWhere(condition)).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2");
+
+        // 조건 없음, 없는 팀 이름
+        assertThat(memberJpaRepository.searchByWhere(new MemberSearchCondition())).hasSize(4);
+        condition.setTeamName("teamX");
+        assertThat(memberJpaRepository.searchByBuilder(condition)).isEmpty();
+    }
+
+}
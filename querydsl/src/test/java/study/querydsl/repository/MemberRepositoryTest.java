@@ -6,15 +6,19 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.KeysetSlice;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -27,6 +31,8 @@ public class MemberRepositoryTest {
 
     @Autowired MemberRepository memberRepository;
 
+    @Autowired MemberTestRepository memberTestRepository;
+
     @Test
     public void basicTest() throws Exception {
         Member member = new Member("member1", 10);
@@ -71,6 +77,58 @@ public class MemberRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member4");
     }
 
+    /**
+     *  동적 쿼리 - where을 이용한 구현 -> 스트리밍 조회
+     *  List로 한번에 가져오지 않고 fetch size 만큼씩 읽어온다. 사용 후에는 close 해야 한다.
+     */
+    @Test
+    public void searchTestWhereStream() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        try (Stream<MemberTeamDto> result = memberRepository.streamByWhere(condition, 1)) {
+            List<String> usernames = result.map(MemberTeamDto::getUsername).collect(Collectors.toList());
+            assertThat(usernames).containsExactlyInAnyOrder("member3", "member4");
+        }
+    }
+
+    /**
+     * 엔티티 스트리밍 조회 : 다음 회원으로 넘어가면 이전 회원은 영속성 컨텍스트에서 detach 된다.
+     */
+    @Test
+    public void searchTestStreamEntities() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 3; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        em.flush();
+        em.clear();
+
+        try (Stream<Member> result = memberTestRepository.streamMembers(new MemberSearchCondition(), 1)) {
+            List<Member> members = result.collect(Collectors.toList());
+
+            assertThat(members).extracting("username").containsExactlyInAnyOrder("member1", "member2", "member3");
+            assertThat(em.contains(members.get(0))).isFalse();
+            assertThat(em.contains(members.get(1))).isFalse();
+            assertThat(em.contains(members.get(2))).isTrue();
+        }
+    }
+
     /**
      *  동적 쿼리 - where을 이용한 구현 -> 간단한 방법으로 페이징 구현
      *  첫페이지 3개를 가져왔기 때문에 3의 사이즈. member1 2 3 가져옴.
@@ -101,6 +159,124 @@ public class MemberRepositoryTest {
         assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
     }
 
+    /**
+     *  Slice 페이징 - count 쿼리 없이 pageSize + 1개를 가져와 다음 페이지 여부만 확인한다.
+     */
+    @Test
+    public void searchTestWhereSlice() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        Slice<MemberTeamDto> first = memberRepository.searchByWhereSlice(condition, PageRequest.of(0, 3));
+        assertThat(first.getContent()).hasSize(3);
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<MemberTeamDto> last = memberRepository.searchByWhereSlice(condition, PageRequest.of(1, 3));
+        assertThat(last.getContent()).hasSize(1);
+        assertThat(last.hasNext()).isFalse();
+    }
+
+    /**
+     *  키셋 페이징 - 이전 페이지의 nextCursor로 다음 페이지를 조회한다.
+     *  나이순으로 2개씩 가져오면 member1 2 -> member3 4 순서로 조회되고, 마지막 페이지에는 다음 커서가 없다.
+     */
+    @Test
+    public void searchTestWhereKeyset() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        KeysetSlice<MemberTeamDto> first = memberRepository.searchByWhereKeyset(condition, null, 2);
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2");
+        assertThat(first.isHasNext()).isTrue();
+
+        KeysetSlice<MemberTeamDto> second = memberRepository.searchByWhereKeyset(condition, first.getNextCursor(), 2);
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    /**
+     * 나이가 같은 회원이 페이지 경계에 걸쳐 있어도 id로 순서가 고정되므로 빠지거나 겹치지 않는다.
+     */
+    @Test
+    public void searchTestWhereKeysetTies() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 1; i <= 5; i++) {
+            em.persist(new Member("member" + i, 20, teamA));
+        }
+        em.persist(new Member("member6", 10, teamA));
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        KeysetSlice<MemberTeamDto> first = memberRepository.searchByWhereKeyset(condition, null, 2);
+        assertThat(first.getContent()).extracting("username").containsExactly("member6", "member1");
+
+        KeysetSlice<MemberTeamDto> second = memberRepository.searchByWhereKeyset(condition, first.getNextCursor(), 2);
+        assertThat(second.getContent()).extracting("username").containsExactly("member2", "member3");
+
+        KeysetSlice<MemberTeamDto> third = memberRepository.searchByWhereKeyset(condition, second.getNextCursor(), 2);
+        assertThat(third.getContent()).extracting("username").containsExactly("member4", "member5");
+        assertThat(third.isHasNext()).isFalse();
+    }
+
+    /**
+     * 이름순 키셋 페이징(MemberTestRepository)에서 이름이 없는 회원은 '' 로 비교하므로 맨 앞에 id 순서로 온다.
+     * 페이지 마지막 회원의 이름이 없어도 다음 커서를 만들 수 있다.
+     */
+    @Test
+    public void searchTestKeysetNullUsernames() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member(null, 20, teamA));
+        em.persist(new Member(null, 30, teamA));
+        em.persist(new Member("member2", 40, teamA));
+        em.flush();
+        em.clear();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        KeysetSlice<Member> first = memberTestRepository.applyKeysetPagination(condition, null, 1);
+        assertThat(first.getContent()).extracting("age").containsExactly(20);
+        assertThat(first.getNextCursor()).isNotNull();
+
+        KeysetSlice<Member> second = memberTestRepository.applyKeysetPagination(condition, first.getNextCursor(), 2);
+        assertThat(second.getContent()).extracting("age").containsExactly(30, 10);
+
+        KeysetSlice<Member> third = memberTestRepository.applyKeysetPagination(condition, second.getNextCursor(), 2);
+        assertThat(third.getContent()).extracting("age").containsExactly(40);
+        assertThat(third.isHasNext()).isFalse();
+    }
+
     /**
      * QuerydslPredicateExecutor사용방법
      * 이는 여러 한계가 있다.
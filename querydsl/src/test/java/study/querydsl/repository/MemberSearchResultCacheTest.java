@@ -0,0 +1,120 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.StatementRecorder;
+import study.querydsl.monitoring.StatementScope;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 캐시는 커밋된 데이터만 담아야 하므로 @Transactional(롤백)을 사용하지 않고 직접 정리한다.
+ */
+@SpringBootTest
+class MemberSearchResultCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberSearchResultCache resultCache;
+
+    TransactionTemplate tx;
+    Team teamA;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        teamA = tx.execute(status -> {
+            Team team = new Team("teamA");
+            em.persist(team);
+            em.persist(new Member("member1", 10, team));
+            em.persist(new Member("member2", 20, team));
+            return team;
+        });
+        resultCache.invalidateAll();
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void cachedUntilWrite() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        try (StatementScope scope = StatementRecorder.open()) {
+            assertThat(memberJpaRepository.searchByWhere(condition)).hasSize(2);
+            assertThat(memberJpaRepository.searchByWhere(condition)).hasSize(2);
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+
+        tx.executeWithoutResult(status -> em.persist(new Member("member3", 30, em.merge(teamA))));
+
+        assertThat(memberJpaRepository.searchByWhere(condition)).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2", "member3");
+    }
+
+    @Test
+    public void uncommittedRowsAreNotCached() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("member3", 30, em.merge(teamA)));
+            em.flush();
+
+            // 자기가 변경한 내용은 보이고, 캐시에는 들어가지 않는다.
+            List<MemberTeamDto> result = memberJpaRepository.searchByWhere(condition);
+            assertThat(result).hasSize(3);
+            status.setRollbackOnly();
+        });
+
+        try (StatementScope scope = StatementRecorder.open()) {
+            assertThat(memberJpaRepository.searchByWhere(condition)).extracting("username")
+                    .containsExactlyInAnyOrder("member1", "member2");
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void unflushedChangesAreVisible() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+        assertThat(memberJpaRepository.searchByWhere(condition)).hasSize(1);
+
+        tx.executeWithoutResult(status -> {
+            // flush 하지 않은 변경도 캐시된 결과 대신 DB(자동 flush 후)에서 조회한다.
+            Member member1 = em.createQuery("select m from Member m where m.username = :username", Member.class)
+                    .setParameter("username", "member1")
+                    .getSingleResult();
+            member1.setUsername("member9");
+
+            assertThat(memberJpaRepository.searchByWhere(condition)).isEmpty();
+            status.setRollbackOnly();
+        });
+
+        assertThat(memberJpaRepository.searchByWhere(condition)).hasSize(1);
+    }
+}
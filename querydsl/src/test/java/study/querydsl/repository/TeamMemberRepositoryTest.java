@@ -0,0 +1,114 @@
+package study.querydsl.repository;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.KeysetSlice;
+
+import javax.persistence.EntityManager;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamMemberRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamMemberRepository teamMemberRepository;
+
+    Team teamA;
+    Team teamB;
+    Team teamC;
+
+    @BeforeEach
+    public void before(){
+        teamA = new Team("teamA");
+        teamB = new Team("teamB");
+        teamC = new Team("teamC");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+        for (int i = 0; i < 5; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        em.persist(new Member("member5", 50, teamB));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void countAndExists() throws Exception {
+        assertThat(teamMemberRepository.countMembers(teamA.getId())).isEqualTo(5);
+        assertThat(teamMemberRepository.hasMembers(teamB.getId())).isTrue();
+        assertThat(teamMemberRepository.hasMembers(teamC.getId())).isFalse();
+
+        Long member5Id = em.createQuery("select m.id from Member m where m.username = 'member5'", Long.class)
+                .getSingleResult();
+        assertThat(teamMemberRepository.isMember(teamB.getId(), member5Id)).isTrue();
+        assertThat(teamMemberRepository.isMember(teamA.getId(), member5Id)).isFalse();
+
+        // Team.members는 로딩되지 않는다.
+        Team findTeamA = em.find(Team.class, teamA.getId());
+        teamMemberRepository.countMembers(teamA.getId());
+        assertThat(Hibernate.isInitialized(findTeamA.getMembers())).isFalse();
+    }
+
+    @Test
+    public void slice() throws Exception {
+        Slice<MemberTeamDto> result = teamMemberRepository.findMembers(teamA.getId(),
+                PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "age")));
+
+        assertThat(result.getContent()).extracting("username").containsExactly("member4", "member3", "member2");
+        assertThat(result.getContent()).extracting("teamName").containsOnly("teamA");
+        assertThat(result.hasNext()).isTrue();
+    }
+
+    @Test
+    public void keysetAndStream() throws Exception {
+        KeysetSlice<MemberTeamDto> first = teamMemberRepository.findMembers(teamA.getId(), null, 3);
+        assertThat(first.getContent()).extracting("username").containsExactly("member0", "member1", "member2");
+
+        KeysetSlice<MemberTeamDto> second = teamMemberRepository.findMembers(teamA.getId(), first.getNextCursor(), 3);
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(second.isHasNext()).isFalse();
+
+        // 2명씩 3번 나눠서 읽는다.
+        try (Stream<MemberTeamDto> stream = teamMemberRepository.streamMembers(teamA.getId(), 2)) {
+            assertThat(stream.map(MemberTeamDto::getUsername).collect(Collectors.toList()))
+                    .containsExactly("member0", "member1", "member2", "member3", "member4");
+        }
+    }
+
+    @Test
+    public void keysetIncludesNullUsernames() throws Exception {
+        // 이름이 없는 회원은 '' 로 비교하므로 맨 앞에 id 순서로 온다.
+        em.persist(new Member(null, 60, teamA));
+        em.persist(new Member(null, 70, teamA));
+        em.flush();
+        em.clear();
+
+        KeysetSlice<MemberTeamDto> first = teamMemberRepository.findMembers(teamA.getId(), null, 1);
+        assertThat(first.getContent()).extracting("age").containsExactly(60);
+        KeysetSlice<MemberTeamDto> second = teamMemberRepository.findMembers(teamA.getId(), first.getNextCursor(), 2);
+        assertThat(second.getContent()).extracting("age").containsExactly(70, 0);
+
+        try (Stream<MemberTeamDto> all = teamMemberRepository.streamMembers(teamA.getId(), 2)) {
+            assertThat(all.map(MemberTeamDto::getAge).collect(Collectors.toList()))
+                    .containsExactly(60, 70, 0, 10, 20, 30, 40);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.StatementRecorder;
+import study.querydsl.monitoring.StatementScope;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 캐시는 커밋된 데이터만 담아야 하므로 @Transactional(롤백)을 사용하지 않고 직접 정리한다.
+ * Team 2차 캐시도 함께 확인한다.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.cache.use_second_level_cache=true")
+class TeamNameCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TeamNameCache teamNameCache;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    TransactionTemplate tx;
+    Long teamAId;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        teamAId = tx.execute(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+            em.persist(new Member("member3", 30, teamB));
+            return teamA.getId();
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        // JPQL 벌크 삭제는 Team 2차 캐시 영역도 비운다.
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void resolveOnceThenFromCache() throws Exception {
+        // 읽기/쓰기 트랜잭션에서는 캐시를 거치지 않으므로 조회 전용 트랜잭션에서 확인한다.
+        TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+
+        try (StatementScope scope = StatementRecorder.open()) {
+            assertThat(readOnlyTx.execute(status -> teamNameCache.findIds("teamA"))).containsExactly(teamAId);
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+
+            // 새 영속성 컨텍스트에서도 SQL 없이 찾는다. (팀 이름 캐시, Team 2차 캐시)
+            assertThat(readOnlyTx.execute(status -> teamNameCache.findIds("teamA"))).containsExactly(teamAId);
+            Team team = readOnlyTx.execute(status -> em.find(Team.class, teamAId));
+            assertThat(team.getName()).isEqualTo("teamA");
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void renameInvalidates() throws Exception {
+        teamNameCache.findIds("teamA");
+
+        tx.executeWithoutResult(status -> em.find(Team.class, teamAId).setName("teamC"));
+
+        assertThat(tx.execute(status -> teamNameCache.findIds("teamA"))).isEmpty();
+        assertThat(tx.execute(status -> teamNameCache.findIds("teamC"))).containsExactly(teamAId);
+    }
+
+    @Test
+    public void unflushedRenameInReadWriteTransaction() throws Exception {
+        teamNameCache.findIds("teamA");
+
+        tx.executeWithoutResult(status -> {
+            // flush 전이라 엔티티 리스너가 아직 호출되지 않았어도 캐시 대신 DB(자동 flush 후)에서 찾는다.
+            em.find(Team.class, teamAId).setName("teamC");
+
+            assertThat(teamNameCache.findIds("teamA")).isEmpty();
+            assertThat(teamNameCache.findIds("teamC")).containsExactly(teamAId);
+            status.setRollbackOnly();
+        });
+    }
+
+    @Test
+    public void searchByTeamName() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        List<MemberTeamDto> byWhere = memberJpaRepository.searchByWhere(condition);
+        List<MemberTeamDto> byBuilder = memberJpaRepository.searchByBuilder(condition);
+
+        assertThat(byWhere).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(byBuilder).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(byWhere).extracting("teamName").containsOnly("teamA");
+
+        // 없는 팀 이름
+        condition.setTeamName("teamX");
+        assertThat(memberJpaRepository.searchByWhere(condition)).isEmpty();
+        assertThat(memberJpaRepository.searchByBuilder(condition)).isEmpty();
+    }
+
+    @Test
+    public void duplicateTeamNames() throws Exception {
+        // 팀 이름은 유일하지 않다. 같은 이름의 팀이 여러개면 team.name 조건으로 모두 찾는다.
+        tx.executeWithoutResult(status -> {
+            Team otherTeamA = new Team("teamA");
+            em.persist(otherTeamA);
+            em.persist(new Member("member4", 40, otherTeamA));
+        });
+        assertThat(teamNameCache.findIds("teamA")).hasSize(2);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        assertThat(memberJpaRepository.searchByWhere(condition)).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2", "member4");
+        assertThat(memberJpaRepository.searchByBuilder(condition)).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2", "member4");
+    }
+}
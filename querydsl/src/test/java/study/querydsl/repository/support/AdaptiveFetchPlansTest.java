@@ -0,0 +1,184 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.MeteredJPAQueryFactory;
+import study.querydsl.monitoring.QueryMetrics;
+import study.querydsl.monitoring.RepeatedStatement;
+import study.querydsl.monitoring.StatementRecorder;
+import study.querydsl.monitoring.StatementScope;
+import study.querydsl.repository.MemberTestRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+// 모든 조회를 샘플링하고, 3번 사용하면 바로 결정한다. (fetch join으로 결정한 뒤에는 다시 측정하지 않는다)
+@SpringBootTest(properties = {
+        "querydsl.fetch-plan.sample-rate=1",
+        "querydsl.fetch-plan.probe-rate=0",
+        "querydsl.fetch-plan.min-samples=3",
+        "querydsl.fetch-plan.settle-millis=0"
+})
+@Transactional
+class AdaptiveFetchPlansTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @Autowired
+    AdaptiveFetchPlans adaptiveFetchPlans;
+
+    @Autowired
+    QueryMetrics queryMetrics;
+
+    @BeforeEach
+    public void before(){
+        adaptiveFetchPlans.reset();
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 4; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void fetchJoinWhenCallSiteTouchesTeam() throws Exception {
+        // 조회할 때마다 team을 사용한다. (fetchJoinNo 처럼 team마다 추가 쿼리)
+        for (int i = 0; i < 3; i++) {
+            List<Member> members = memberTestRepository.basicSelectFrom();
+            assertThat(emf.getPersistenceUnitUtil().isLoaded(members.get(0).getTeam())).isFalse();
+            members.forEach(member -> member.getTeam().getName());
+            em.clear();
+        }
+
+        // 다음 조회부터는 fetch join이 붙는다. (fetchJoinUse 처럼 조회 직후 team이 로딩되어 있다)
+        List<Member> members = memberTestRepository.basicSelectFrom();
+        assertThat(members).hasSize(4);
+        assertThat(emf.getPersistenceUnitUtil().isLoaded(members.get(0).getTeam())).isTrue();
+
+        AdaptiveFetchPlans.FetchPlanDecision decision = adaptiveFetchPlans.snapshot().stream()
+                .filter(plan -> plan.getCallSite().equals("MemberTestRepository.basicSelectFrom"))
+                .findFirst()
+                .get();
+        assertThat(decision.getEntity()).isEqualTo("Member");
+        assertThat(decision.getAssociations()).extracting("name").containsExactly("team");
+        assertThat(decision.getAssociations()).extracting("plan").containsExactly("FETCH_JOIN");
+    }
+
+    @Test
+    public void keepLazyWhenCallSiteDoesNotTouchTeam() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            memberTestRepository.basicSelectFrom();
+            em.clear();
+        }
+
+        List<Member> members = memberTestRepository.basicSelectFrom();
+        assertThat(emf.getPersistenceUnitUtil().isLoaded(members.get(0).getTeam())).isFalse();
+        assertThat(adaptiveFetchPlans.snapshot()).flatExtracting("associations").extracting("plan")
+                .containsOnly("LAZY");
+    }
+
+    @Test
+    public void fetchJoinInPaginationLambda() throws Exception {
+        // 페이징 메서드에 넘긴 람다 안의 selectFrom도 학습 대상이다.
+        MemberSearchCondition condition = new MemberSearchCondition();
+        for (int i = 0; i < 3; i++) {
+            Page<Member> page = memberTestRepository.applyPagination(condition, PageRequest.of(0, 2));
+            assertThat(emf.getPersistenceUnitUtil().isLoaded(page.getContent().get(0).getTeam())).isFalse();
+            page.getContent().forEach(member -> member.getTeam().getName());
+            em.clear();
+        }
+
+        try (StatementScope scope = StatementRecorder.open()) {
+            Page<Member> page = memberTestRepository.applyPagination(condition, PageRequest.of(0, 2));
+            assertThat(page.getContent()).hasSize(2);
+            assertThat(page.getTotalElements()).isEqualTo(4);
+            assertThat(emf.getPersistenceUnitUtil().isLoaded(page.getContent().get(0).getTeam())).isTrue();
+
+            // 람다에서 이미 team을 left join 했으므로 그 조인에 fetch만 붙는다. (team을 두번 조인하지 않는다)
+            assertThat(scope.getRepeatedStatements(1)).extracting(RepeatedStatement::getSql)
+                    .filteredOn(sql -> !sql.contains("count("))
+                    .hasSize(1)
+                    .allSatisfy(sql -> assertThat(sql.split(" join ", -1)).hasSize(2));
+        }
+        assertThat(adaptiveFetchPlans.snapshot())
+                .filteredOn(plan -> plan.getCallSite().equals("MemberTestRepository.applyPagination"))
+                .flatExtracting("associations").extracting("plan")
+                .containsExactly("FETCH_JOIN");
+    }
+
+    @Test
+    public void backToLazyWhenCallSiteStopsTouchingTeam() throws Exception {
+        // fetch join으로 결정된 뒤에도 모든 조회를 지연 로딩으로 다시 측정한다.
+        AdaptiveFetchPlans probing = new AdaptiveFetchPlans(emf, true, 1, 1, 3, 0.5, 20, 0);
+        MeteredJPAQueryFactory queryFactory = new MeteredJPAQueryFactory(em, queryMetrics);
+
+        for (int i = 0; i < 3; i++) {
+            probing.apply("probe", member, queryFactory.selectFrom(member)).fetch()
+                    .forEach(m -> m.getTeam().getName());
+            em.clear();
+        }
+        assertThat(probing.snapshot()).flatExtracting("associations").extracting("plan")
+                .containsExactly("FETCH_JOIN");
+
+        // 호출한 쪽이 더 이상 team을 사용하지 않는다.
+        for (int i = 0; i < 3; i++) {
+            List<Member> members = probing.apply("probe", member, queryFactory.selectFrom(member)).fetch();
+            assertThat(emf.getPersistenceUnitUtil().isLoaded(members.get(0).getTeam())).isFalse();
+            em.clear();
+        }
+        assertThat(probing.snapshot()).flatExtracting("associations").extracting("plan")
+                .containsExactly("LAZY");
+        assertThat(probing.snapshot()).flatExtracting("associations").extracting("lastTouchRatio")
+                .containsExactly(0.0);
+    }
+
+    @Test
+    public void batchLoadedTeamsAreNotCountedAsTouched() throws Exception {
+        // 팀이 서로 다른 회원 4명을 더 만든다.
+        for (int i = 0; i < 4; i++) {
+            Team team = new Team("other" + i);
+            em.persist(team);
+            em.persist(new Member("other" + i, i, team));
+        }
+        em.flush();
+        em.clear();
+
+        // 회원 하나의 팀만 사용한다. TeamBatchLoader가 다른 팀까지 한번에 읽어와도 그 프록시는 초기화되지 않는다.
+        for (int i = 0; i < 3; i++) {
+            List<Member> members = memberTestRepository.basicSelectFrom();
+            members.stream()
+                    .filter(m -> m.getUsername().startsWith("other"))
+                    .findFirst()
+                    .get()
+                    .getTeam().getName();
+            em.clear();
+        }
+
+        memberTestRepository.basicSelectFrom();
+        assertThat(adaptiveFetchPlans.snapshot())
+                .filteredOn(plan -> plan.getCallSite().equals("MemberTestRepository.basicSelectFrom"))
+                .flatExtracting("associations").extracting("plan")
+                .containsExactly("LAZY");
+    }
+}
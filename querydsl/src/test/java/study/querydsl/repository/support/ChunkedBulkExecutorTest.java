@@ -0,0 +1,106 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberTestRepository;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 청크마다 커밋되므로 @Transactional(롤백)을 사용하지 않고 직접 정리한다.
+ */
+@SpringBootTest(properties = {"querydsl.bulk.chunk-size=10", "querydsl.bulk.pause-millis=0"})
+class ChunkedBulkExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            for (int i = 0; i < 40; i++) {
+                em.persist(new Member("member" + i, i, teamA));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void bulkUpdateInChunks() throws Exception {
+        BulkProgress progress = memberTestRepository.bulkRenameByAgeLt(28, "비회원");
+
+        assertThat(progress.isCompleted()).isTrue();
+        assertThat(progress.getTotalChunks()).isEqualTo(3);     // 28명 / 10
+        assertThat(progress.getAffectedRows()).isEqualTo(28);
+        assertThat(countByUsername("비회원")).isEqualTo(28);
+    }
+
+    @Test
+    public void bulkDeleteInChunks() throws Exception {
+        BulkProgress progress = memberTestRepository.bulkDeleteByAgeGt(18, 5, Duration.ZERO);
+
+        assertThat(progress.isCompleted()).isTrue();
+        assertThat(progress.getAffectedRows()).isEqualTo(21);
+        assertThat(tx.execute(status -> em.createQuery("select count(m) from Member m", Long.class).getSingleResult()))
+                .isEqualTo(19);
+    }
+
+    @Test
+    public void noTarget() throws Exception {
+        BulkProgress progress = memberTestRepository.bulkRenameByAgeLt(0, "비회원");
+
+        assertThat(progress.getTotalChunks()).isEqualTo(0);
+        assertThat(progress.getAffectedRows()).isEqualTo(0);
+    }
+
+    /**
+     * 호출한 트랜잭션의 영속성 컨텍스트에 있던 회원은 detach되어서, 다시 조회하면 변경된 값이 보인다.
+     */
+    @Test
+    public void detachStaleEntities() throws Exception {
+        tx.executeWithoutResult(status -> {
+            List<Member> members = em.createQuery("select m from Member m where m.age < 5", Member.class).getResultList();
+            Member member0 = members.get(0);
+
+            memberTestRepository.bulkRenameByAgeLt(28, "비회원");
+
+            assertThat(em.contains(member0)).isFalse();
+            assertThat(em.find(Member.class, member0.getId()).getUsername()).isEqualTo("비회원");
+        });
+    }
+
+    private long countByUsername(String username) {
+        return tx.execute(status -> em.createQuery("select count(m) from Member m where m.username = :username", Long.class)
+                .setParameter("username", username)
+                .getSingleResult());
+    }
+}
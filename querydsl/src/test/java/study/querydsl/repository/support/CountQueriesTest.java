@@ -0,0 +1,130 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class CountQueriesTest {
+
+    @Autowired
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before(){
+        queryFactory = new JPAQueryFactory(em);
+
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50));
+    }
+
+    /**
+     * 조건에서 team을 사용하지 않으면 left join과 정렬이 제거된다.
+     */
+    @Test
+    public void unusedLeftJoinRemoved() throws Exception {
+        JPAQuery<Member> contentQuery = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(member.age.goe(20))
+                .orderBy(member.username.desc());
+
+        JPAQuery<?> countQuery = CountQueries.derive(em, contentQuery);
+
+        assertThat(countQuery.toString()).doesNotContain("join").doesNotContain("order by");
+        assertThat(countQuery.fetchCount()).isEqualTo(contentQuery.fetchCount());
+    }
+
+    /**
+     * 조건에서 team을 사용하면 조인을 남긴다.
+     */
+    @Test
+    public void referencedLeftJoinKept() throws Exception {
+        JPAQuery<Member> contentQuery = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(team.name.eq("teamA"));
+
+        JPAQuery<?> countQuery = CountQueries.derive(em, contentQuery);
+
+        assertThat(countQuery.toString()).contains("left join");
+        assertThat(countQuery.fetchCount()).isEqualTo(2);
+    }
+
+    /**
+     * 컬렉션 조인은 row 수를 바꾸므로 조건에서 쓰지 않아도 남긴다.
+     */
+    @Test
+    public void collectionJoinKept() throws Exception {
+        JPAQuery<Team> contentQuery = queryFactory
+                .selectFrom(team)
+                .leftJoin(team.members, member);
+
+        JPAQuery<?> countQuery = CountQueries.derive(em, contentQuery);
+
+        assertThat(countQuery.toString()).contains("left join");
+        assertThat(countQuery.fetchCount()).isEqualTo(contentQuery.fetchCount());
+    }
+
+    /**
+     * 별칭 없는 연관관계 fetch join(AdaptiveFetchPlans가 붙이는 조인)은 count에서 제거된다.
+     */
+    @Test
+    public void unaliasedFetchJoinRemoved() throws Exception {
+        JPAQuery<Member> contentQuery = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team).fetchJoin()
+                .where(member.age.goe(20));
+
+        JPAQuery<?> countQuery = CountQueries.derive(em, contentQuery);
+
+        assertThat(countQuery.toString()).doesNotContain("join");
+        assertThat(countQuery.fetchCount()).isEqualTo(contentQuery.fetchCount());
+    }
+
+    /**
+     * 조건에 사용한 Param 값과 쿼리 플래그도 count 쿼리로 옮긴다.
+     */
+    @Test
+    public void paramsAndFlagsCopied() throws Exception {
+        Param<Integer> minAge = new Param<>(Integer.class, "minAge");
+        QueryFlag flag = new QueryFlag(QueryFlag.Position.END, "");
+        JPAQuery<Member> contentQuery = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(member.age.goe(minAge))
+                .set(minAge, 20);
+        contentQuery.getMetadata().addFlag(flag);
+
+        JPAQuery<?> countQuery = CountQueries.derive(em, contentQuery);
+
+        assertThat(countQuery.getMetadata().getParams()).containsEntry(minAge, 20);
+        assertThat(countQuery.getMetadata().getFlags()).contains(flag);
+        assertThat(countQuery.fetchCount()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,138 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.RepeatedStatement;
+import study.querydsl.monitoring.StatementRecorder;
+import study.querydsl.monitoring.StatementScope;
+import study.querydsl.repository.MemberTestRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class DeferredJoinsTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    @BeforeEach
+    public void before(){
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        // 나이가 같은 회원이 둘씩 있다.
+        for (int i = 0; i < 6; i++) {
+            em.persist(new Member("member" + i, (i / 2 + 1) * 10, i % 2 == 0 ? teamA : teamB));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void idTieBreakerAddedLast() throws Exception {
+        Sort sort = DeferredJoins.withIdTieBreaker(Sort.by(Sort.Order.desc("age")), member.id);
+        assertThat(sort).containsExactly(Sort.Order.desc("age"), Sort.Order.asc("id"));
+
+        // 이미 id 정렬이 있으면 그대로 둔다.
+        Sort byId = Sort.by(Sort.Order.desc("id"));
+        assertThat(DeferredJoins.withIdTieBreaker(byId, member.id)).isSameAs(byId);
+    }
+
+    @Test
+    public void orderByIdsKeepsIdOrder() throws Exception {
+        List<Long> content = Arrays.asList(1L, 2L, 3L);
+
+        assertThat(DeferredJoins.orderByIds(Arrays.asList(3L, 1L, 2L), content, id -> id))
+                .containsExactly(3L, 1L, 2L);
+    }
+
+    @Test
+    public void pagesWithTiesHaveNoDuplicates() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        List<MemberTeamDto> all = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            Page<MemberTeamDto> result = memberTestRepository.applyDeferredJoinPagination(condition,
+                    PageRequest.of(page, 2, Sort.by("age")));
+            assertThat(result.getContent()).hasSize(2);
+            assertThat(result.getTotalElements()).isEqualTo(6);
+            all.addAll(result.getContent());
+        }
+
+        // 나이가 같으면 id 순서로 고정되므로 페이지 사이에 빠지거나 겹치는 회원이 없다.
+        assertThat(all).extracting("username")
+                .containsExactly("member0", "member1", "member2", "member3", "member4", "member5");
+        assertThat(all).extracting("memberId").doesNotHaveDuplicates();
+        assertThat(all).extracting("teamName").containsExactly("teamA", "teamB", "teamA", "teamB", "teamA", "teamB");
+    }
+
+    @Test
+    public void pagePastTheEnd() throws Exception {
+        Page<MemberTeamDto> result = memberTestRepository.applyDeferredJoinPagination(new MemberSearchCondition(),
+                PageRequest.of(10, 2, Sort.by("age")));
+
+        assertThat(result.getContent()).isEmpty();
+        assertThat(result.getTotalElements()).isEqualTo(6);
+    }
+
+    @Test
+    public void countQueryWithoutUnusedTeamJoin() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        try (StatementScope scope = StatementRecorder.open()) {
+            Page<MemberTeamDto> result = memberTestRepository.applyDeferredJoinPagination(condition,
+                    PageRequest.of(1, 2, Sort.by("age")));
+            assertThat(result.getContent()).extracting("username").containsExactly("member4", "member5");
+
+            // count 쿼리만 team을 조인하지 않는다. id 쿼리는 정렬에 쓸 수 있도록 left join을 유지한다.
+            List<RepeatedStatement> statements = scope.getRepeatedStatements(1);
+            assertThat(statements).hasSize(3);
+            assertThat(statements).extracting(RepeatedStatement::getSql)
+                    .filteredOn(sql -> sql.contains("count("))
+                    .hasSize(1)
+                    .allSatisfy(sql -> assertThat(sql).doesNotContain("join"));
+            assertThat(statements).extracting(RepeatedStatement::getSql)
+                    .filteredOn(sql -> !sql.contains("count(") && !sql.contains(" in ("))
+                    .hasSize(1)
+                    .allSatisfy(sql -> assertThat(sql).contains("left outer join"));
+        }
+    }
+
+    @Test
+    public void sortByTeamNameKeepsMembersWithoutTeam() throws Exception {
+        em.persist(new Member("noTeam", 70));
+        em.flush();
+        em.clear();
+
+        Page<MemberTeamDto> result = memberTestRepository.applyDeferredJoinPagination(new MemberSearchCondition(),
+                PageRequest.of(0, 10, Sort.by("team.name")));
+
+        // team.name 정렬이 암묵적 inner join이 되면 팀이 없는 회원이 빠진다.
+        assertThat(result.getTotalElements()).isEqualTo(7);
+        assertThat(result.getContent()).hasSize(7);
+        assertThat(result.getContent()).extracting("username").contains("noTeam");
+        assertThat(result.getContent()).extracting("teamName").filteredOn(name -> name != null)
+                .containsExactly("teamA", "teamA", "teamA", "teamB", "teamB", "teamB");
+    }
+}
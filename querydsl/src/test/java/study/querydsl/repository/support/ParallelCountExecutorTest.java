@@ -0,0 +1,155 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.RepeatedStatement;
+import study.querydsl.monitoring.StatementRecorder;
+import study.querydsl.monitoring.StatementScope;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * count 스레드는 별도 커넥션에서 커밋된 데이터만 보므로 @Transactional(롤백)을 사용하지 않고 직접 정리한다.
+ * 검색 결과 캐시, count 캐시를 거치지 않는 메서드만 사용한다.
+ */
+@SpringBootTest
+class ParallelCountExecutorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ParallelCountExecutor parallelCountExecutor;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("member" + i, i * 10, teamA));
+            }
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void countNotStartedWhenFirstPageIsNotFull() throws Exception {
+        AtomicInteger counted = new AtomicInteger();
+
+        Page<String> page = parallelCountExecutor.getPage(PageRequest.of(0, 5), () -> Arrays.asList("a", "b"),
+                queryFactory -> {
+                    counted.incrementAndGet();
+                    return queryFactory.select(member.id).from(member);
+                });
+
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(counted.get()).isZero();
+    }
+
+    @Test
+    public void countInThreadWhenFirstPageIsFull() throws Exception {
+        AtomicInteger counted = new AtomicInteger();
+
+        Page<String> page = parallelCountExecutor.getPage(PageRequest.of(0, 2), () -> Arrays.asList("a", "b"),
+                queryFactory -> {
+                    counted.incrementAndGet();
+                    return queryFactory.select(member.id).from(member);
+                });
+
+        assertThat(page.getTotalElements()).isEqualTo(10);
+        assertThat(counted.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void failedCountPropagates() throws Exception {
+        // offset > 0 : count 스레드에서 실행되고 실패가 호출한 쪽으로 전달된다.
+        assertThatThrownBy(() -> parallelCountExecutor.getPage(PageRequest.of(1, 2), () -> Arrays.asList("c", "d"),
+                queryFactory -> {
+                    throw new IllegalStateException("count failed");
+                }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("count failed");
+    }
+
+    @Test
+    public void totalMatchesFetchCount() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        Page<MemberTeamDto> page = memberRepository.searchByWherePageParallel(condition, PageRequest.of(1, 3));
+
+        Long expected = tx.execute(status -> em.createQuery(
+                "select count(m) from Member m where m.age >= 20", Long.class).getSingleResult());
+        assertThat(page.getTotalElements()).isEqualTo(expected).isEqualTo(8);
+        assertThat(page.getContent()).hasSize(3);
+    }
+
+    @Test
+    public void countDerivedFromContentQuery() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        try (StatementScope scope = StatementRecorder.open()) {
+            // 첫 페이지가 가득 찼으므로 현재 스레드에서 센다.
+            Page<MemberTeamDto> page = memberRepository.searchByWherePageParallel(condition, PageRequest.of(0, 3));
+            assertThat(page.getTotalElements()).isEqualTo(8);
+
+            // 조건에서 쓰지 않는 team 조인은 count 쿼리에서 제거된다.
+            assertThat(scope.getRepeatedStatements(1)).extracting(RepeatedStatement::getSql)
+                    .filteredOn(sql -> sql.contains("count("))
+                    .hasSize(1)
+                    .allSatisfy(sql -> assertThat(sql).doesNotContain("join"));
+        }
+    }
+
+    @Test
+    public void countInThreadInsideReadWriteTransaction() throws Exception {
+        // 읽기/쓰기 트랜잭션에서는 현재 커넥션으로 세므로 커밋하지 않은 회원도 total에 포함된다.
+        List<MemberTeamDto> content = tx.execute(status -> {
+            em.persist(new Member("member10", 100));
+            em.flush();
+            Page<MemberTeamDto> page = memberRepository.searchByWherePageParallel(new MemberSearchCondition(),
+                    PageRequest.of(1, 3));
+            assertThat(page.getTotalElements()).isEqualTo(11);
+            status.setRollbackOnly();
+            return page.getContent();
+        });
+        assertThat(content).hasSize(3);
+    }
+}
@@ -0,0 +1,108 @@
+package study.querydsl.repository.support;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberTestRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 조회 전용 트랜잭션과 읽기/쓰기 트랜잭션을 각각 시작해야 하므로 @Transactional(롤백)을 사용하지 않고 직접 정리한다.
+ */
+@SpringBootTest
+class ReadOnlyQueriesTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberTestRepository memberTestRepository;
+
+    TransactionTemplate tx;
+    TransactionTemplate readOnlyTx;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("member1", 10, teamA));
+            em.persist(new Member("member2", 20, teamA));
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+        });
+    }
+
+    @Test
+    public void readOnlyEntityIsNotDirtyChecked() throws Exception {
+        Long member1Id = readOnlyTx.execute(status -> {
+            Member member1 = member1(memberTestRepository.basicSelectFrom());
+            assertThat(em.unwrap(Session.class).isReadOnly(member1)).isTrue();
+
+            // 스냅샷이 없으므로 변경해도 flush 때 update 되지 않는다.
+            member1.setUsername("changed");
+            em.flush();
+            return member1.getId();
+        });
+
+        assertThat(tx.execute(status -> em.find(Member.class, member1Id).getUsername())).isEqualTo("member1");
+    }
+
+    @Test
+    public void readWriteTransactionKeepsDirtyChecking() throws Exception {
+        // 읽기/쓰기 트랜잭션에 참여해서 조회한 엔티티는 read-only 힌트를 받지 않는다. 변경하면 커밋 때 update 된다.
+        Long member1Id = tx.execute(status -> {
+            Member member1 = member1(memberTestRepository.basicSelectFrom());
+            assertThat(em.unwrap(Session.class).isReadOnly(member1)).isFalse();
+
+            member1.setUsername("changed");
+            return member1.getId();
+        });
+
+        assertThat(tx.execute(status -> em.find(Member.class, member1Id).getUsername())).isEqualTo("changed");
+    }
+
+    @Test
+    public void pendingWritesVisibleInReadWriteTransaction() throws Exception {
+        // 읽기/쓰기 트랜잭션에서는 FlushMode.MANUAL을 적용하지 않는다.
+        // 쿼리 실행 전 자동 flush로 아직 insert 하지 않은 회원도 조회된다.
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("member3", 30));
+
+            List<Member> members = memberTestRepository.basicSelectFrom();
+
+            assertThat(members).extracting("username").containsExactlyInAnyOrder("member1", "member2", "member3");
+            status.setRollbackOnly();
+        });
+    }
+
+    private Member member1(List<Member> members) {
+        return members.stream()
+                .filter(m -> m.getUsername().equals("member1"))
+                .findFirst()
+                .get();
+    }
+}
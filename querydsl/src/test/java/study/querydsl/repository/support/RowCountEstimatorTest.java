@@ -0,0 +1,23 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class RowCountEstimatorTest {
+
+    @Autowired
+    RowCountEstimator rowCountEstimator;
+
+    @Test
+    public void estimateFromCurrentSchema() throws Exception {
+        // H2 : 현재 스키마(PUBLIC)의 member, team 테이블 통계를 찾는다.
+        assertThat(rowCountEstimator.estimate(Member.class)).isPresent();
+        assertThat(rowCountEstimator.estimate(Team.class)).isPresent();
+    }
+}
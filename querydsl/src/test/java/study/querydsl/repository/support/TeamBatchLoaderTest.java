@@ -0,0 +1,76 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitoring.StatementRecorder;
+import study.querydsl.monitoring.StatementScope;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "querydsl.team-batch-loader.batch-size=2")
+@Transactional
+class TeamBatchLoaderTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @BeforeEach
+    public void before(){
+        for (int i = 0; i < 5; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            em.persist(new Member("member" + i, i, team));
+            em.persist(new Member("member" + (i + 5), i + 5, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * 회원 10명, 팀 5개. 팀 프록시를 하나씩 초기화하지 않고 2개씩 in 쿼리로 읽는다.
+     * 회원 조회 1번 + 팀 조회 3번 (2, 2, 1)
+     */
+    @Test
+    public void loadTeamProxiesInBatches() throws Exception {
+        try (StatementScope scope = StatementRecorder.open()) {
+            List<Member> members = em.createQuery("select m from Member m order by m.id", Member.class)
+                    .getResultList();
+            for (Member m : members) {
+                assertThat(m.getTeam().getName()).startsWith("team");
+            }
+
+            assertThat(scope.getStatementCount()).isEqualTo(4);
+            assertThat(scope.getEntityLoads()).containsEntry(Team.class.getName(), 5);
+        }
+    }
+
+    @Test
+    public void batchDoesNotInitializeOtherProxies() throws Exception {
+        // member0, member5 (team0), member1, member6 (team1) ...
+        List<Member> members = em.createQuery("select m from Member m order by m.id", Member.class)
+                .getResultList();
+        Team team1 = members.get(2).getTeam();
+
+        try (StatementScope scope = StatementRecorder.open()) {
+            members.get(0).getTeam().getName();
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+
+            // team1은 같은 in 쿼리로 읽었지만 프록시는 사용할 때 초기화된다. (AdaptiveFetchPlans가 사용하지 않은 팀으로 본다)
+            assertThat(emf.getPersistenceUnitUtil().isLoaded(team1)).isFalse();
+            assertThat(team1.getName()).isEqualTo("team1");
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TtlCacheTest {
+
+    @Test
+    public void concurrentLoadersRunOnce() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(1, TimeUnit.MINUTES, 10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("key", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "value";
+            })));
+            loading.await();
+
+            // 첫번째 요청이 읽어오는 동안 들어온 요청은 loader를 실행하지 않고 기다린다.
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> cache.get("key", () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(cache.missCount()).isEqualTo(1);
+            assertThat(cache.hitCount()).isEqualTo(7);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedByWeight() throws Exception {
+        TtlCache<String, List<Integer>> cache = new TtlCache<>(1, TimeUnit.MINUTES, 5, List::size);
+
+        cache.get("a", () -> Arrays.asList(1, 2));
+        cache.get("b", () -> Arrays.asList(1, 2));
+        cache.get("a", () -> Arrays.asList(9, 9));     // a를 최근에 사용
+        cache.get("c", () -> Arrays.asList(1, 2));     // 무게 6 > 5 : 가장 오래 사용하지 않은 b 제거
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.weight()).isEqualTo(4);
+        assertThat(cache.evictionCount()).isEqualTo(1);
+        assertThat(cache.get("a", () -> Arrays.asList(0))).containsExactly(1, 2);
+        assertThat(cache.get("b", () -> Arrays.asList(0))).containsExactly(0);
+    }
+
+    @Test
+    public void skipValueHeavierThanMaxWeight() throws Exception {
+        TtlCache<String, List<Integer>> cache = new TtlCache<>(1, TimeUnit.MINUTES, 2, List::size);
+
+        cache.get("small", () -> Arrays.asList(1));
+        cache.get("large", () -> Arrays.asList(1, 2, 3));
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.evictionCount()).isZero();
+    }
+
+    @Test
+    public void expireAfterTtl() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(50, TimeUnit.MILLISECONDS, 10);
+
+        cache.get("key", () -> "first");
+        assertThat(cache.get("key", () -> "second")).isEqualTo("first");
+
+        Thread.sleep(100);
+        assertThat(cache.get("key", () -> "second")).isEqualTo("second");
+    }
+
+    @Test
+    public void loadDuringInvalidateIsNotCached() throws Exception {
+        TtlCache<String, String> cache = new TtlCache<>(1, TimeUnit.MINUTES, 10);
+
+        cache.get("key", () -> {
+            cache.invalidateAll();      // 읽어오는 중에 데이터가 변경됨
+            return "stale";
+        });
+
+        assertThat(cache.size()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}